@@ -0,0 +1,41 @@
+package pokemon.game;
+
+/**
+ * This class is the parent class of the behaviors of the entities living on
+ * the map, which are driven by the WorldTicker
+ */
+abstract class Behavior {
+
+    /**
+     * The pending timer of the behavior, null if nothing is scheduled
+     */
+    WorldTicker.Timer timer;
+
+    /**
+     * Whether the entity is currently taken off the map
+     */
+    boolean hidden = false;
+
+    /**
+     * Get the entity driven by this behavior
+     *
+     * @return The Pokemon or supply station
+     */
+    abstract Cell entity();
+
+    /**
+     * Called when the player is standing on the entity
+     *
+     * @param ticker The ticker driving the behavior
+     * @param now    The current game time in milliseconds
+     */
+    abstract void playerEntered(WorldTicker ticker, long now);
+
+    /**
+     * Called when the timer scheduled by the behavior expires
+     *
+     * @param ticker The ticker driving the behavior
+     * @param now    The current game time in milliseconds
+     */
+    abstract void timerExpired(WorldTicker ticker, long now);
+}
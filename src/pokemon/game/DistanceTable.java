@@ -0,0 +1,558 @@
+package pokemon.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * This class is responsible for storing the distances between the points of
+ * interest of a map, i.e. the starting point, the destination, the Pokemons
+ * and the supply stations. The distances are computed by one BFS from each
+ * point of interest, the BFS run in parallel. A distance between two points
+ * of interest does not pass any other one, as the player would visit it
+ * <p>
+ * A table is immutable. When the Pokemons and stations have moved, appeared
+ * or left, the next table is derived from the previous one: a point which
+ * left can only make distances shorter, which one BFS from its cell finds,
+ * and a point which appeared can only make the distances longer whose
+ * shortest ways passed its cell, only the rows of those points are computed
+ * again. The walls never change once the map is loaded, they are read from
+ * the map instead of being copied
+ * <p>
+ * The buffers of a BFS are reused by the next BFS instead of allocating two
+ * arrays of the size of the map for each point of interest, there are as many
+ * of them as BFS running at the same time, shared by the tables derived from
+ * one another
+ */
+public class DistanceTable {
+
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * The index of the starting point and the destination, the Pokemons and
+     * stations start from index 2. The indexes of the Pokemons and stations
+     * are only valid in the same table
+     */
+    public static final int START = 0, DEST = 1;
+
+    private final long version;
+    private final int rows, cols;
+
+    //the grid of the map, only the walls are read
+    private final byte[] grid;
+
+    //the cells of the points of interest which stop a BFS, i.e. all but the
+    //starting point, one bit per cell
+    private final long[] blocked;
+    private final ArrayList<Cell> points;
+    private final ArrayList<Cell> entities;
+    private final int[][] distances;
+    private final int[] toDestination;
+
+    //the buffers of the BFS which are not in use
+    private final ConcurrentLinkedDeque<Search> searches;
+
+    /**
+     * The buffers of a BFS. The distances are not cleared between two BFS,
+     * each BFS stores its distances from a base above every value stored
+     * before, so a cell is reached by the current BFS if its value is at least
+     * the base
+     */
+    private static final class Search {
+        final int[] dist, queue;
+        int base = 1, last = 0;
+
+        Search(int cells) {
+            dist = new int[cells];
+            queue = new int[cells];
+        }
+
+        /**
+         * Start a new BFS above the values of the previous one
+         */
+        void start() {
+            if (last >= Integer.MAX_VALUE - dist.length) {
+                Arrays.fill(dist, 0);
+                last = 0;
+            }
+            base = last + 1;
+        }
+
+        /**
+         * Get the distance of the cell found by the current BFS
+         *
+         * @param cell The cell, stored as m * n + col
+         * @return The distance, -1 if it cannot be reached
+         */
+        int distance(int cell) {
+            int value = dist[cell];
+            return value >= base ? value - base : -1;
+        }
+    }
+
+    /**
+     * Constructor, compute the table of the map as it is now. A location
+     * occupied by more than one entity is counted once with the type shown on
+     * the map
+     *
+     * @param map     The game map
+     * @param version The version of the map
+     */
+    DistanceTable(Map map, long version) {
+        this.version = version;
+        Cell dimension = map.getDimension();
+        rows = dimension.getM();
+        cols = dimension.getN();
+        grid = map.getGrid();
+        points = new ArrayList<>();
+        entities = new ArrayList<>();
+        searches = new ConcurrentLinkedDeque<>();
+        collectPoints(map, points, entities);
+
+        blocked = new long[(rows * cols + 63) >> 6];
+        for (int i = DEST; i < points.size(); i++)
+            setBlocked(index(points.get(i)), true);
+
+        //one BFS from each point of interest, and one to the destination
+        //passing any cell
+        ArrayList<Callable<int[]>> tasks = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++) {
+            int source = index(points.get(i));
+            tasks.add(() -> distancesFrom(source, true));
+        }
+        tasks.add(() -> distancesFrom(index(points.get(DEST)), false));
+        List<int[]> results = invokeAll(tasks);
+        distances = new int[points.size()][];
+        for (int i = 0; i < points.size(); i++)
+            distances[i] = results.get(i);
+        toDestination = results.get(points.size());
+    }
+
+    /**
+     * Constructor, derive the table from the previous one with the given points
+     * of interest. The points kept from the previous table come first, in the
+     * same order
+     */
+    private DistanceTable(DistanceTable previous, long version, ArrayList<Cell> newPoints, ArrayList<Cell> newEntities) {
+        this.version = version;
+        rows = previous.rows;
+        cols = previous.cols;
+        grid = previous.grid;
+        blocked = previous.blocked.clone();
+        searches = previous.searches;
+
+        //keep the points which have not moved
+        IdentityHashMap<Cell, Cell> target = new IdentityHashMap<>();
+        for (int i = 2; i < newPoints.size(); i++)
+            target.put(newEntities.get(i), newPoints.get(i));
+        ArrayList<Integer> kept = new ArrayList<>();
+        ArrayList<Cell> released = new ArrayList<>();
+        for (int i = 0; i < previous.points.size(); i++) {
+            Cell to = i < 2 ? previous.points.get(i) : target.get(previous.entities.get(i));
+            if (previous.points.get(i).equals(to)) {
+                kept.add(i);
+                target.remove(previous.entities.get(i));
+            } else
+                released.add(previous.points.get(i));
+        }
+        points = new ArrayList<>();
+        entities = new ArrayList<>();
+        int[][] d = new int[newPoints.size()][newPoints.size()];
+        toDestination = new int[newPoints.size()];
+        for (int i : kept) {
+            points.add(previous.points.get(i));
+            entities.add(previous.entities.get(i));
+        }
+        for (int i = 0; i < kept.size(); i++) {
+            for (int j = 0; j < kept.size(); j++)
+                d[i][j] = previous.distances[kept.get(i)][kept.get(j)];
+            toDestination[i] = previous.toDestination[kept.get(i)];
+        }
+        distances = d;
+
+        //a point which left opens the ways through its cell
+        for (Cell cell : released) {
+            int source = index(cell);
+            setBlocked(source, false);
+            int[] through = distancesFrom(source, true);
+            for (int i = 0; i < points.size(); i++)
+                for (int j = 0; j < points.size(); j++)
+                    if (through[i] != UNREACHABLE && through[j] != UNREACHABLE && (long) through[i] + through[j] < d[i][j])
+                        d[i][j] = through[i] + through[j];
+        }
+
+        //a point which appeared closes the ways through its cell, the rows
+        //of the points whose shortest ways may pass it are computed again
+        for (int k = 2; k < newPoints.size(); k++) {
+            Cell entity = newEntities.get(k);
+            if (!target.containsKey(entity))
+                continue;
+            int source = index(newPoints.get(k));
+            int[] through = distancesFrom(source, true);
+            setBlocked(source, true);
+            int added = points.size();
+            points.add(newPoints.get(k));
+            entities.add(entity);
+            for (int i = 0; i < added; i++)
+                d[added][i] = d[i][added] = through[i];
+            ArrayList<Integer> stale = new ArrayList<>();
+            for (int i = 0; i < added; i++)
+                for (int j = i + 1; j < added; j++)
+                    if (through[i] != UNREACHABLE && through[j] != UNREACHABLE && d[i][j] != UNREACHABLE
+                            && (long) through[i] + through[j] == d[i][j]) {
+                        stale.add(i);
+                        break;
+                    }
+            updateRows(stale);
+        }
+
+        //the points which appeared are reached from the destination passing any cell
+        if (points.size() > kept.size()) {
+            Search search = bfs(index(points.get(DEST)), false);
+            for (int i = kept.size(); i < points.size(); i++) {
+                int dd = search.distance(index(points.get(i)));
+                toDestination[i] = dd < 0 ? UNREACHABLE : dd;
+            }
+            searches.push(search);
+        }
+    }
+
+    /**
+     * Get the table of the map as it is now, derived from this one
+     *
+     * @param map     The game map
+     * @param version The version of the map
+     * @return The table, a new one if the Pokemons or stations have changed
+     */
+    DistanceTable update(Map map, long version) {
+        ArrayList<Cell> newPoints = new ArrayList<>();
+        ArrayList<Cell> newEntities = new ArrayList<>();
+        collectPoints(map, newPoints, newEntities);
+
+        //count the points which have not moved, compute the table from
+        //scratch if more than half of them have, a move counts twice
+        IdentityHashMap<Cell, Cell> previous = new IdentityHashMap<>();
+        for (int i = 2; i < points.size(); i++)
+            previous.put(entities.get(i), points.get(i));
+        int kept = 0;
+        for (int i = 2; i < newPoints.size(); i++)
+            if (newPoints.get(i).equals(previous.get(newEntities.get(i))))
+                kept++;
+        int changes = (points.size() - 2 - kept) + (newPoints.size() - 2 - kept);
+        if (changes == 0)
+            return new DistanceTable(this, version);
+        if (changes > newPoints.size())
+            return new DistanceTable(map, version);
+        return new DistanceTable(this, version, newPoints, newEntities);
+    }
+
+    /**
+     * Constructor, the same table for a newer version of the map
+     */
+    private DistanceTable(DistanceTable table, long version) {
+        this.version = version;
+        rows = table.rows;
+        cols = table.cols;
+        grid = table.grid;
+        blocked = table.blocked;
+        searches = table.searches;
+        points = table.points;
+        entities = table.entities;
+        distances = table.distances;
+        toDestination = table.toDestination;
+    }
+
+    /**
+     * Collect the starting point, the destination, and the Pokemons and
+     * stations shown on the map
+     */
+    private static void collectPoints(Map map, ArrayList<Cell> points, ArrayList<Cell> entities) {
+        points.add(new Cell(map.getStart()));
+        points.add(new Cell(map.getDestination()));
+        entities.add(null);
+        entities.add(null);
+        for (Pokemon pkm : map.getExistingPokemons())
+            if (map.getType(pkm) == Map.POKE && map.getPokemon(pkm) == pkm) {
+                points.add(new Cell(pkm));
+                entities.add(pkm);
+            }
+        for (Station stn : map.getExistingStations())
+            if (map.getType(stn) == Map.SUPP && map.getStation(stn) == stn) {
+                points.add(new Cell(stn));
+                entities.add(stn);
+            }
+    }
+
+    /**
+     * Compute the rows and the columns of the points again
+     *
+     * @param stale The indexes of the points
+     */
+    private void updateRows(List<Integer> stale) {
+        ArrayList<Callable<int[]>> tasks = new ArrayList<>();
+        for (int i : stale) {
+            int source = index(points.get(i));
+            tasks.add(() -> distancesFrom(source, true));
+        }
+        List<int[]> results = invokeAll(tasks);
+        for (int k = 0; k < stale.size(); k++) {
+            int i = stale.get(k);
+            int[] row = results.get(k);
+            for (int j = 0; j < row.length; j++)
+                distances[i][j] = distances[j][i] = row[j];
+        }
+    }
+
+    private static List<int[]> invokeAll(List<Callable<int[]>> tasks) {
+        ArrayList<int[]> results = new ArrayList<>();
+        try {
+            for (Future<int[]> result : ForkJoinPool.commonPool().invokeAll(tasks))
+                results.add(result.get());
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        return results;
+    }
+
+    /**
+     * Get the version of the map which the table is computed from
+     *
+     * @return The version
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the number of points of interest
+     *
+     * @return The number of points of interest
+     */
+    public int size() {
+        return points.size();
+    }
+
+    /**
+     * Get the location of the point of interest
+     *
+     * @param i The index of the point of interest
+     * @return The location
+     */
+    public Cell getPoint(int i) {
+        return new Cell(points.get(i));
+    }
+
+    /**
+     * Get the Pokemon or station of the point of interest, it may have moved
+     * since the table was computed
+     *
+     * @param i The index of the point of interest
+     * @return The Pokemon or station, null for the starting point and the
+     * destination
+     */
+    public Cell getEntity(int i) {
+        return entities.get(i);
+    }
+
+    /**
+     * Get the distance between two points of interest without passing any
+     * other one
+     *
+     * @param from The index of the point of interest the player leaves
+     * @param to   The index of the point of interest the player reaches
+     * @return The distance, UNREACHABLE if there is no such way
+     */
+    public int getDistance(int from, int to) {
+        return distances[from][to];
+    }
+
+    /**
+     * Get the distance from the point of interest to the destination, passing
+     * any other one
+     *
+     * @param from The index of the point of interest
+     * @return The distance, UNREACHABLE if there is no such way
+     */
+    public int getDistanceToDestination(int from) {
+        return toDestination[from];
+    }
+
+    /**
+     * Find a shortest way between two points of interest without passing any
+     * other one, the BFS is run again instead of storing the way of every pair
+     *
+     * @param from The index of the point of interest the player leaves
+     * @param to   The index of the point of interest the player reaches
+     * @return The locations after the first point of interest up to the second
+     * one, null if there is no such way
+     */
+    public List<Cell> getPath(int from, int to) {
+        if (distances[from][to] == UNREACHABLE)
+            return null;
+        Search search = bfs(index(points.get(from)), true);
+
+        //walk back from the target along decreasing distances
+        Cell[] path = new Cell[distances[from][to]];
+        int cell = index(points.get(to));
+        for (int d = path.length - 1; d >= 0; d--) {
+            path[d] = new Cell(cell / cols, cell % cols);
+            cell = previous(cell, search);
+        }
+        searches.push(search);
+        return Arrays.asList(path);
+    }
+
+    /**
+     * Copy the map as it was when the table was computed, i.e. its walls with
+     * copies of the Pokemons and stations at the points of interest
+     *
+     * @return The copy of the map
+     */
+    Map copyMap() {
+        byte[] copy = new byte[grid.length];
+        for (int i = 0; i < grid.length; i++) {
+            byte type = grid[i];
+            copy[i] = type == Map.WALL || type == Map.DEST || type == Map.START ? type : (byte) Map.PATH;
+        }
+        Map map = new Map(rows, cols, copy, new Cell(points.get(START)), new Cell(points.get(DEST)));
+        for (int i = 2; i < points.size(); i++) {
+            Cell cell = points.get(i), entity = entities.get(i);
+            if (entity instanceof Pokemon) {
+                Pokemon pkm = (Pokemon) entity;
+                Pokemon at = new Pokemon(cell.getM(), cell.getN(), pkm.getPokemonName(), pkm.getType(), pkm.getPower(),
+                        pkm.getBallsRequired());
+                map.setMap(at, Map.POKE);
+                map.addPokemon(at);
+            } else {
+                Station at = new Station(cell.getM(), cell.getN(), ((Station) entity).getBallsProvided());
+                map.setMap(at, Map.SUPP);
+                map.addStation(at);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Breadth-first search from the cell
+     *
+     * @param source  The cell, stored as m * n + col
+     * @param blocked Whether the other points of interest stop the search
+     * @return The buffers holding the distance of each cell, which must be
+     * pushed back to the searches once they are read
+     */
+    private Search bfs(int source, boolean blocked) {
+        Search search = searches.poll();
+        if (search == null)
+            search = new Search(rows * cols);
+        search.start();
+        int[] dist = search.dist, queue = search.queue;
+        int base = search.base;
+        int head = 0, tail = 0;
+        dist[source] = base;
+        queue[tail++] = source;
+        while (head < tail) {
+            int cell = queue[head++];
+            if (blocked && cell != source && isBlocked(cell))
+                continue;
+            for (int dir = 0; dir < 4; dir++) {
+                int next = neighbour(cell, dir);
+                if (next >= 0 && dist[next] < base && grid[next] != Map.WALL) {
+                    dist[next] = dist[cell] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        search.last = dist[queue[tail - 1]];
+        return search;
+    }
+
+    /**
+     * Get the distances from the cell to the points of interest
+     *
+     * @param source  The cell, stored as m * n + col
+     * @param blocked Whether the other points of interest stop the search
+     * @return The distance to each point of interest, UNREACHABLE if it cannot
+     * be reached
+     */
+    private int[] distancesFrom(int source, boolean blocked) {
+        Search search = bfs(source, blocked);
+        int[] result = new int[points.size()];
+        for (int j = 0; j < points.size(); j++) {
+            int d = search.distance(index(points.get(j)));
+            result[j] = d < 0 ? UNREACHABLE : d;
+        }
+        searches.push(search);
+        return result;
+    }
+
+    /**
+     * Get the neighbour of the cell
+     *
+     * @param cell The cell, stored as m * n + col
+     * @param dir  0 up, 1 down, 2 left, 3 right
+     * @return The neighbour, -1 if it is out of bound
+     */
+    int neighbour(int cell, int dir) {
+        return neighbour(cell, dir, rows, cols);
+    }
+
+    /**
+     * Get the neighbour of the cell in a grid
+     *
+     * @param cell The cell, stored as m * n + col
+     * @param dir  0 up, 1 down, 2 left, 3 right
+     * @param rows The number of rows of the grid
+     * @param cols The number of columns of the grid
+     * @return The neighbour, -1 if it is out of bound
+     */
+    static int neighbour(int cell, int dir, int rows, int cols) {
+        switch (dir) {
+            case 0:
+                return cell >= cols ? cell - cols : -1;
+            case 1:
+                return cell + cols < rows * cols ? cell + cols : -1;
+            case 2:
+                return cell % cols > 0 ? cell - 1 : -1;
+            default:
+                return cell % cols < cols - 1 ? cell + 1 : -1;
+        }
+    }
+
+    /**
+     * Get the neighbour of the cell one step closer to the source of the BFS,
+     * the neighbour must not be another point of interest
+     */
+    private int previous(int cell, Search search) {
+        int d = search.distance(cell);
+        for (int dir = 0; dir < 4; dir++) {
+            int c = neighbour(cell, dir);
+            if (c >= 0 && search.distance(c) == d - 1 && (d == 1 || !isBlocked(c)))
+                return c;
+        }
+        throw new IllegalStateException("no path to " + new Cell(cell / cols, cell % cols));
+    }
+
+    private boolean isBlocked(int cell) {
+        return (blocked[cell >> 6] & 1L << cell) != 0;
+    }
+
+    private void setBlocked(int cell, boolean value) {
+        if (value)
+            blocked[cell >> 6] |= 1L << cell;
+        else
+            blocked[cell >> 6] &= ~(1L << cell);
+    }
+
+    private int index(Cell cell) {
+        return cell.getM() * cols + cell.getN();
+    }
+}
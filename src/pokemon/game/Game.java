@@ -1,66 +1,77 @@
-package pokemon.game;
-
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-
-public class Game {
-
-    public Map map;
-    public Player player = new Player();
-
-    /**
-     * Initialize all the objects inside the game
-     *
-     * @param inputFile The given game information
-     * @throws Exception
-     */
-    public void initialize(File inputFile) throws Exception {
-        BufferedReader br = new BufferedReader(new FileReader(inputFile));
-
-        // Read the first of the input file
-        String line = br.readLine();
-        int M = Integer.parseInt(line.split(" ")[0]);
-        int N = Integer.parseInt(line.split(" ")[1]);
-
-        // To do: define a map
-        map = new Map(M, N);
-
-        // Read the following M lines of the Map
-        for (int i = 0; i < M; i++) {
-            line = br.readLine();
-
-            // to do
-            // Read the map line by line
-            map.readFileLine(i, line);
-        }
-
-        // to do
-        // Find the number of stations and pokemons in the map
-        // Continue read the information of all the stations and pokemons by
-        // using br.readLine();
-        try {
-            while ((line = br.readLine()) != null) {
-                String[] temp = line.split(", ");
-                String[] temp2 = temp[0].split(",");
-                temp2[0] = temp2[0].replace("<", "");
-                temp2[1] = temp2[1].replace(">", "");
-
-                if (temp[0].length() - 3 != temp2[0].length() + temp2[1].length())
-                    throw new Exception();
-
-                if (temp.length == 5)
-                    map.addPokemon(new Pokemon(temp2, temp));
-                else if (temp.length == 2)
-                    map.addStation(new Station(temp2, temp));
-                else
-                    throw new Exception();
-            }
-        } catch (Exception e) {
-            System.out.println("The input file is written in invalid format.");
-            System.exit(-1);
-        } finally {
-            br.close();
-        }
-    }
-}
+package pokemon.game;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+public class Game {
+
+    /**
+     * The size of the input file from which it is loaded through a memory-map
+     */
+    public static final long MAPPED_THRESHOLD = 64L << 20;
+
+    public Map map;
+    public Player player = new Player();
+    public GameClock clock = new GameClock();
+
+    /**
+     * Initialize all the objects inside the game, large files are loaded
+     * through a memory-map
+     *
+     * @param inputFile The given game information
+     * @throws IOException        If the file cannot be read
+     * @throws MapFormatException If the file is written in invalid format
+     */
+    public void initialize(File inputFile) throws IOException, MapFormatException {
+        initialize(inputFile, inputFile.length() >= MAPPED_THRESHOLD);
+    }
+
+    /**
+     * Initialize all the objects inside the game
+     *
+     * @param inputFile The given game information
+     * @param mapped    Whether to load the file through a memory-map, and parse
+     *                  the stations and pokemons in parallel
+     * @throws IOException        If the file cannot be read
+     * @throws MapFormatException If the file is written in invalid format
+     */
+    public void initialize(File inputFile, boolean mapped) throws IOException, MapFormatException {
+        try (FileChannel channel = FileChannel.open(inputFile.toPath())) {
+            if (mapped)
+                map = new MappedMapLoader(channel).load();
+            else
+                // Read the dimension, the M lines of the map, and the information
+                // of all the stations and pokemons as the file is streamed
+                map = new MapParser(channel).parse();
+        }
+    }
+
+    /**
+     * Save the map, the stations, the pokemons and the player into a binary
+     * snapshot
+     *
+     * @param snapshotFile The snapshot file
+     * @throws IOException If the snapshot cannot be written
+     */
+    public void save(File snapshotFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Snapshot.write(this, channel);
+        }
+    }
+
+    /**
+     * Load the map, the stations, the pokemons and the player from a binary
+     * snapshot written by save()
+     *
+     * @param snapshotFile The snapshot file
+     * @throws IOException If the snapshot cannot be read or is not supported
+     */
+    public void load(File snapshotFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath())) {
+            Snapshot.read(this, channel);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package pokemon.game;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class is responsible for measuring the game time, which does not
+ * elapse while the game is paused, and for parking the behaviors waiting for
+ * a game time deadline or for the player to step on their cell. A move of the
+ * player only wakes the behaviors watching a cell of the same stripe as the
+ * new location, the ones waiting for a deadline are only woken when the game
+ * is paused or resumed
+ */
+public class GameClock {
+
+    private static final int STRIPES = 256;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition resumed = lock.newCondition();
+
+    // the behaviors watching a cell, by the stripe of the cell
+    private final Condition[] stepped = new Condition[STRIPES];
+    private final CopyOnWriteArrayList<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private boolean paused = false;
+    private long elapsed = 0, resumedAt = System.nanoTime();
+    private long signals = 0;
+
+    {
+        for (int i = 0; i < STRIPES; i++)
+            stepped[i] = lock.newCondition();
+    }
+
+    /**
+     * Get the current game time
+     *
+     * @return The game time in milliseconds
+     */
+    public long now() {
+        lock.lock();
+        try {
+            return TimeUnit.NANOSECONDS.toMillis(nanos());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the current game time, the caller must hold the lock
+     *
+     * @return The game time in nanoseconds
+     */
+    private long nanos() {
+        return paused ? elapsed : elapsed + System.nanoTime() - resumedAt;
+    }
+
+    /**
+     * Check if the game is paused
+     *
+     * @return Whether the game is paused
+     */
+    public boolean isPaused() {
+        lock.lock();
+        try {
+            return paused;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Pause the game, the game time stops until the game is resumed
+     */
+    public void pause() {
+        setPaused(true);
+    }
+
+    /**
+     * Resume the game
+     */
+    public void resume() {
+        setPaused(false);
+    }
+
+    private void setPaused(boolean pause) {
+        lock.lock();
+        try {
+            if (paused == pause)
+                return;
+            if (pause)
+                elapsed = nanos();
+            else
+                resumedAt = System.nanoTime();
+            paused = pause;
+            resumed.signalAll();
+            for (Condition condition : stepped)
+                condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Runnable listener : listeners)
+            listener.run();
+    }
+
+    /**
+     * Add a listener which is called after the game is paused or resumed
+     *
+     * @param listener The listener
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Wake up the behaviors watching the cell, e.g. when the player steps on it
+     *
+     * @param cell The cell
+     */
+    public void signal(Cell cell) {
+        lock.lock();
+        try {
+            signals++;
+            stepped[stripeOf(cell)].signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of signals so far
+     *
+     * @return The number of signals
+     */
+    public long signals() {
+        lock.lock();
+        try {
+            return signals;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Block while the game is paused
+     *
+     * @throws InterruptedException If the thread is interrupted
+     */
+    public void awaitResume() throws InterruptedException {
+        lock.lock();
+        try {
+            while (paused)
+                resumed.await();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Block until the game time reaches the deadline
+     *
+     * @param deadline The game time in milliseconds
+     * @throws InterruptedException If the thread is interrupted
+     */
+    public void awaitUntil(long deadline) throws InterruptedException {
+        lock.lock();
+        try {
+            long target = TimeUnit.MILLISECONDS.toNanos(deadline);
+            while (paused || nanos() < target) {
+                if (paused)
+                    resumed.await();
+                else
+                    resumed.awaitNanos(target - nanos());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Block until a signal arrives for the watched cell, the game is paused or
+     * resumed, or the game time reaches the deadline. It returns at once if
+     * any signal arrived since the caller has seen, so a move made before the
+     * caller is parked is not missed
+     *
+     * @param seen     The number of signals already seen by the caller
+     * @param deadline The game time in milliseconds, Long.MAX_VALUE if there is
+     *                 no deadline
+     * @param watched  The cell the caller stands on
+     * @return The number of signals so far
+     * @throws InterruptedException If the thread is interrupted
+     */
+    public long awaitSignal(long seen, long deadline, Cell watched) throws InterruptedException {
+        lock.lock();
+        try {
+            if (signals != seen)
+                return signals;
+            Condition condition = stepped[stripeOf(watched)];
+            if (paused || deadline == Long.MAX_VALUE)
+                condition.await();
+            else {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(deadline) - nanos();
+                if (remaining > 0)
+                    condition.awaitNanos(remaining);
+            }
+            return signals;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int stripeOf(Cell cell) {
+        return (cell.getM() * 31 + cell.getN()) & (STRIPES - 1);
+    }
+}
@@ -1,63 +1,320 @@
 package pokemon.game;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class is responsible for storing the map data and perform operations
- * related to the map
+ * related to the map. The map is divided into 8x8 regions guarded by striped
+ * locks, so that entities moving in different regions do not block each other.
+ * A change only writes to the stripe of its cell, the counters of the whole
+ * map are summed over the stripes when they are read
+ * <p>
+ * A cell takes one byte in the grid and the Pokemons and stations are indexed
+ * by the cells they stand on, in an open addressing table of int keys per
+ * stripe. The empty path cells of a stripe are listed with swap-remove on the
+ * first respawn in its regions, which then takes constant time whatever the
+ * map looks like. The lists cost 4 bytes per cell which is not a wall or the
+ * destination, and the position of each cell in its list 4 bytes per cell.
+ * The walls and the destination are fixed once the map is loaded
  */
 public class Map {
 
     public static final char WALL = '#', PATH = ' ', START = 'B', DEST = 'D', SUPP = 'S', POKE = 'P';
 
+    private static final int REGION_SHIFT = 3;
+
+    // the number of stripes, the counters of each one are stored in snapshots
+    static final int STRIPES = 64;
+
     private int m, n;
-    private char[][] map;
+
+    // the type of each cell, stored as m * n + col
+    private byte[] grid;
     private Cell start, destination;
     private ArrayList<Pokemon> pokemons;
     private ArrayList<Station> stations;
 
+    // the Pokemons and stations taken off the map, e.g. waiting to respawn,
+    // guarded by the lists of the visible ones
+    private final ArrayList<Pokemon> hiddenPokemons = new ArrayList<>();
+    private final ArrayList<Station> hiddenStations = new ArrayList<>();
+
+    // the position of each empty path cell in the list of its stripe, only
+    // allocated on the first respawn
+    private volatile int[] freeSlot;
+
+    // the empty path cells of each stripe counted while the rows are loaded
+    private int[] loadedFree;
+
+    // the locks of the regions
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    // the distance table is computed again when it is older than the map
+    private volatile DistanceTable distanceTable;
+    private final Object distanceLock = new Object();
+
     {
         pokemons = new ArrayList<Pokemon>();
         stations = new ArrayList<Station>();
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new Stripe();
     }
 
     /**
-     * Constructor Initialize the character array, and store the dimension into
-     * m and n
+     * The lock of the regions mapped to a stripe, with the counters of their
+     * cells and the Pokemons and stations standing on them. They are only
+     * written while the lock is held, or while the map is loaded, and the
+     * Pokemons and stations are only read while the lock is held
+     */
+    private static final class Stripe extends ReentrantLock {
+        // the number of empty path cells, and the number of changes
+        volatile int free;
+        volatile long version;
+
+        // the empty path cells, stored as m * n + col, the first free ones are
+        // valid. Null until a cell of the stripe is picked
+        int[] freeCells;
+
+        // the Pokemons and stations, an open addressing table keyed by
+        // m * n + col, the empty slots hold -1
+        int[] keys = empty(8);
+        Cell[] occupants = new Cell[8];
+        int numOfOccupants;
+
+        // keep the counters of different stripes on different cache lines
+        long p1, p2, p3, p4, p5, p6, p7;
+
+        private static int[] empty(int capacity) {
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, -1);
+            return keys;
+        }
+
+        private int slotOf(int key) {
+            int hash = key * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & (keys.length - 1);
+        }
+
+        /**
+         * Get the Pokemon or station standing on a cell
+         *
+         * @param key The index of the cell, m * n + col
+         * @return The Pokemon or station, null if there is none
+         */
+        Cell getOccupant(int key) {
+            int mask = keys.length - 1;
+            for (int slot = slotOf(key); keys[slot] != -1; slot = (slot + 1) & mask)
+                if (keys[slot] == key)
+                    return occupants[slot];
+            return null;
+        }
+
+        /**
+         * Put the Pokemon or station standing on a cell, replacing the old one
+         *
+         * @param key    The index of the cell, m * n + col
+         * @param entity The Pokemon or station
+         */
+        void putOccupant(int key, Cell entity) {
+            if ((numOfOccupants + 1) * 4 > keys.length * 3) {
+                int[] oldKeys = keys;
+                Cell[] oldOccupants = occupants;
+                keys = empty(oldKeys.length * 2);
+                occupants = new Cell[oldKeys.length * 2];
+                numOfOccupants = 0;
+                for (int i = 0; i < oldKeys.length; i++)
+                    if (oldKeys[i] != -1)
+                        putOccupant(oldKeys[i], oldOccupants[i]);
+            }
+            int mask = keys.length - 1, slot = slotOf(key);
+            while (keys[slot] != -1 && keys[slot] != key)
+                slot = (slot + 1) & mask;
+            if (keys[slot] == -1)
+                numOfOccupants++;
+            keys[slot] = key;
+            occupants[slot] = entity;
+        }
+
+        /**
+         * Remove the Pokemon or station standing on a cell, the entries after
+         * it are shifted back so that no probe sequence is broken
+         *
+         * @param key The index of the cell, m * n + col
+         */
+        void removeOccupant(int key) {
+            int mask = keys.length - 1, hole = slotOf(key);
+            while (keys[hole] != key) {
+                if (keys[hole] == -1)
+                    return;
+                hole = (hole + 1) & mask;
+            }
+            for (int slot = (hole + 1) & mask; keys[slot] != -1; slot = (slot + 1) & mask) {
+                // an entry can fill the hole unless its home slot lies after the hole
+                int home = slotOf(keys[slot]);
+                if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                    keys[hole] = keys[slot];
+                    occupants[hole] = occupants[slot];
+                    hole = slot;
+                }
+            }
+            keys[hole] = -1;
+            occupants[hole] = null;
+            numOfOccupants--;
+        }
+    }
+
+    /**
+     * Constructor Initialize the grid, and store the dimension into m and n
      *
      * @param m Number of rows
      * @param n Number of columns
      */
     public Map(int m, int n) {
-        map = new char[m][n];
+        this(m, n, new byte[checkDimension(m, n)]);
+    }
+
+    private Map(int m, int n, byte[] grid) {
+        this.grid = grid;
         this.m = m;
         this.n = n;
     }
 
     /**
-     * Read the file line by line and store the data in to the map
+     * Check the dimension of the map, the grid is a single array
      *
-     * @param m Indicate which line of the file s contains
-     * @param s The n th line of the file
+     * @param m Number of rows
+     * @param n Number of columns
+     * @return The number of cells
      */
-    public void readFileLine(int m, String s) {
-        for (int i = 0; i < n; i++) {
-            char temp = s.charAt(i);
+    static int checkDimension(int m, int n) {
+        if (m <= 0 || n <= 0 || (long) m * n > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("Invalid map dimension " + m + " x " + n);
+        return m * n;
+    }
 
-            if (temp != Map.DEST && temp != Map.START && temp != Map.SUPP && temp != Map.POKE && temp != Map.PATH
-                    && temp != Map.WALL) {
-                System.out.println("The input file is written in invalid format.");
-                System.exit(-1);
-            }
+    /**
+     * Constructor, take over the grid and count its empty path cells
+     *
+     * @param m           Number of rows
+     * @param n           Number of columns
+     * @param grid        The type of each cell, stored as m * n + col
+     * @param start       The starting point
+     * @param destination The destination
+     */
+    Map(int m, int n, byte[] grid, Cell start, Cell destination) {
+        this(m, n, grid, new int[STRIPES], start, destination);
+        for (int i = 0; i < grid.length; i++)
+            if (grid[i] == PATH)
+                stripes[stripeOf(i / n, i % n)].free++;
+    }
+
+    /**
+     * Constructor, take over the grid restored from a snapshot with the
+     * counters of its stripes, no cell is read
+     *
+     * @param m           Number of rows
+     * @param n           Number of columns
+     * @param grid        The type of each cell, stored as m * n + col
+     * @param free        The number of empty path cells of each stripe
+     * @param start       The starting point
+     * @param destination The destination
+     */
+    Map(int m, int n, byte[] grid, int[] free, Cell start, Cell destination) {
+        this(m, n, grid);
+        if (grid.length != checkDimension(m, n))
+            throw new IllegalArgumentException("The grid has " + grid.length + " cells instead of " + m + " x " + n);
+        if (free.length != STRIPES)
+            throw new IllegalArgumentException("The map has " + STRIPES + " stripes instead of " + free.length);
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i].free = free[i];
+        this.start = start;
+        this.destination = destination;
+    }
+
+    /**
+     * Get the number of empty path cells of each stripe
+     *
+     * @return The counters, indexed by stripe
+     */
+    int[] getFreeCounts() {
+        int[] free = new int[STRIPES];
+        for (int i = 0; i < STRIPES; i++)
+            free[i] = stripes[i].free;
+        return free;
+    }
+
+    /**
+     * Get the type of each cell, stored as m * n + col
+     *
+     * @return The grid, which must not be modified
+     */
+    byte[] getGrid() {
+        return grid;
+    }
 
-            this.map[m][i] = temp;
-            if (temp == DEST)
-                this.destination = new Cell(m, i);
-            else if (temp == START)
-                this.start = new Cell(m, i);
+    /**
+     * Store a cell read from the file into the map, the type must be valid
+     *
+     * @param m    The m th row
+     * @param col  The column
+     * @param type The type of the cell
+     */
+    void loadCell(int m, int col, byte type) {
+        this.grid[index(m, col)] = type;
+        Stripe stripe = stripes[stripeOf(m, col)];
+        stripe.version++;
+        stripe.freeCells = null;
+        if (type == PATH)
+            stripe.free++;
+        if (type == DEST)
+            this.destination = new Cell(m, col);
+        else if (type == START)
+            this.start = new Cell(m, col);
+    }
+
+    /**
+     * Store a row read from the file into the map, the types must be valid.
+     * The row is copied at once and its empty path cells are only counted,
+     * endLoad() publishes the counters when every row is loaded
+     *
+     * @param m   The m th row
+     * @param row The types of the n cells of the row
+     */
+    void loadRow(int m, byte[] row) {
+        System.arraycopy(row, 0, grid, index(m, 0), n);
+        if (loadedFree == null)
+            loadedFree = new int[STRIPES];
+        for (int col = 0; col < n; col += 1 << REGION_SHIFT) {
+            int free = 0;
+            for (int j = col; j < Math.min(n, col + (1 << REGION_SHIFT)); j++)
+                if (row[j] == PATH)
+                    free++;
+            loadedFree[stripeOf(m, col)] += free;
         }
     }
 
+    /**
+     * Publish the counters of the rows stored by loadRow()
+     *
+     * @param start       The starting point, can be null
+     * @param destination The destination, can be null
+     */
+    void endLoad(Cell start, Cell destination) {
+        if (loadedFree != null) {
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i].free += loadedFree[i];
+                stripes[i].version++;
+                stripes[i].freeCells = null;
+            }
+            loadedFree = null;
+        }
+        this.start = start;
+        this.destination = destination;
+    }
+
     /**
      * Get the dimenstion of the map
      *
@@ -68,22 +325,443 @@ public class Map {
     }
 
     /**
-     * Get the game map character array
+     * Get the type of the cell
      *
-     * @return The game map character array
+     * @param m The m th row
+     * @param n The n th column
+     * @return The type of the cell
      */
-    public char[][] getMap() {
-        return map;
+    public char getType(int m, int n) {
+        return (char) grid[index(m, n)];
     }
 
     /**
-     * Set the game map character array
+     * Get the type of the cell
      *
-     * @param cell The location going to be modified
-     * @param type The new type
+     * @param cell The cell
+     * @return The type of the cell
+     */
+    public char getType(Cell cell) {
+        return (char) grid[index(cell.getM(), cell.getN())];
+    }
+
+    /**
+     * Get the index of the cell in the grid, checking that it is inside the map
+     *
+     * @param m   The m th row
+     * @param col The column
+     * @return The index of the cell, m * n + col
+     * @throws ArrayIndexOutOfBoundsException If the cell is out of bound
+     */
+    int index(int m, int col) {
+        if (m < 0 || m >= this.m || col < 0 || col >= n)
+            throw new ArrayIndexOutOfBoundsException("Cell (" + m + ", " + col + ") is out of the " + this.m + " x " + n + " map");
+        return m * n + col;
+    }
+
+    /**
+     * Set the game map character array, a Pokemon or a station is also indexed
+     * by its location. Concurrent callers must hold the lock of the cell
+     *
+     * @param cell The location going to be modified, the Pokemon itself for
+     *             POKE and the station itself for SUPP
+     * @param type The new type, PATH, POKE or SUPP
+     * @throws IllegalArgumentException If the type is not PATH, POKE or SUPP,
+     *                                  POKE or SUPP is set without the
+     *                                  matching entity, or the cell is a wall
+     *                                  or the destination
      */
     public void setMap(Cell cell, char type) {
-        map[cell.getM()][cell.getN()] = type;
+        int index = index(cell.getM(), cell.getN());
+        byte old = grid[index];
+        if (type != PATH && type != POKE && type != SUPP)
+            throw new IllegalArgumentException("A cell cannot be set to '" + type + "'");
+        if ((type == POKE && !(cell instanceof Pokemon)) || (type == SUPP && !(cell instanceof Station)))
+            throw new IllegalArgumentException("Only the entity itself can be set to '" + type + "' at " + cell);
+        if (old == WALL || old == DEST)
+            throw new IllegalArgumentException("The cell " + cell + " is fixed as '" + (char) old + "'");
+        grid[index] = (byte) type;
+        Stripe stripe = stripes[stripeOf(cell.getM(), cell.getN())];
+        if (old == PATH && type != PATH) {
+            removeFreeCell(stripe, index);
+            stripe.free--;
+        } else if (old != PATH && type == PATH) {
+            addFreeCell(stripe, index);
+            stripe.free++;
+        }
+        stripe.version++;
+
+        if (type == PATH)
+            stripe.removeOccupant(index);
+        else
+            stripe.putOccupant(index, cell);
+    }
+
+    /**
+     * Get the lock of the region containing the cell
+     *
+     * @param cell The cell
+     * @return The lock of the region
+     */
+    public ReentrantLock getLock(Cell cell) {
+        return stripes[stripeOf(cell.getM(), cell.getN())];
+    }
+
+    private static int stripeOf(int m, int col) {
+        return ((m >> REGION_SHIFT) * 31 + (col >> REGION_SHIFT)) & (STRIPES - 1);
+    }
+
+    private static int stripeOf(Cell cell) {
+        return stripeOf(cell.getM(), cell.getN());
+    }
+
+    /**
+     * Get the number of changes made to the map, the sum of the stripes
+     *
+     * @return The version of the map
+     */
+    long getVersion() {
+        long version = 0;
+        for (Stripe stripe : stripes)
+            version += stripe.version;
+        return version;
+    }
+
+    /**
+     * Lock the regions of two cells, always in the same order to avoid dead
+     * lock
+     *
+     * @param a The first cell
+     * @param b The second cell
+     */
+    private void lock(Cell a, Cell b) {
+        int i = stripeOf(a), j = stripeOf(b);
+        stripes[Math.min(i, j)].lock();
+        if (i != j)
+            stripes[Math.max(i, j)].lock();
+    }
+
+    private void unlock(Cell a, Cell b) {
+        int i = stripeOf(a), j = stripeOf(b);
+        if (i != j)
+            stripes[Math.max(i, j)].unlock();
+        stripes[Math.min(i, j)].unlock();
+    }
+
+    /**
+     * Move the Pokemon or station to an empty path cell, only the regions of
+     * the two cells are locked
+     *
+     * @param entity The Pokemon or station
+     * @param to     The new location
+     * @param type   The type of the entity, POKE or SUPP
+     * @return Whether the entity is moved, false if the new location is no
+     * longer an empty path
+     */
+    public boolean moveEntity(Cell entity, Cell to, char type) {
+        Cell from = new Cell(entity);
+        lock(from, to);
+        try {
+            if (getType(to) != PATH)
+                return false;
+            setMap(entity, PATH);
+            entity.setCoordinate(to);
+            setMap(entity, type);
+            return true;
+        } finally {
+            unlock(from, to);
+        }
+    }
+
+    /**
+     * Take the Pokemon or station off the map, it is kept as hidden until it
+     * is put back by placeEntity()
+     *
+     * @param entity The Pokemon or station
+     */
+    public void removeEntity(Cell entity) {
+        ReentrantLock lock = getLock(entity);
+        lock.lock();
+        try {
+            if (getOccupant(entity) == entity)
+                setMap(entity, PATH);
+        } finally {
+            lock.unlock();
+        }
+        if (entity instanceof Pokemon)
+            synchronized (pokemons) {
+                if (removeSame(pokemons, entity))
+                    hiddenPokemons.add((Pokemon) entity);
+            }
+        else
+            synchronized (stations) {
+                if (removeSame(stations, entity))
+                    hiddenStations.add((Station) entity);
+            }
+    }
+
+    /**
+     * Remove the entity itself from the list, Cell.equals() only compares the
+     * locations
+     *
+     * @return Whether the entity was in the list
+     */
+    private static boolean removeSame(ArrayList<? extends Cell> list, Cell entity) {
+        for (int i = 0; i < list.size(); i++)
+            if (list.get(i) == entity) {
+                list.remove(i);
+                return true;
+            }
+        return false;
+    }
+
+    /**
+     * Add a Pokemon or station which is hidden, e.g. restored from a snapshot
+     * while it was waiting to respawn
+     *
+     * @param entity The Pokemon or station
+     */
+    void addHidden(Cell entity) {
+        if (entity instanceof Pokemon)
+            synchronized (pokemons) {
+                hiddenPokemons.add((Pokemon) entity);
+            }
+        else
+            synchronized (stations) {
+                hiddenStations.add((Station) entity);
+            }
+    }
+
+    /**
+     * Get the Pokemons taken off the map, including the ones which are caught
+     *
+     * @return A copy of the hidden Pokemons
+     */
+    public ArrayList<Pokemon> getHiddenPokemons() {
+        synchronized (pokemons) {
+            return new ArrayList<>(hiddenPokemons);
+        }
+    }
+
+    /**
+     * Get the supply stations taken off the map
+     *
+     * @return A copy of the hidden supply stations
+     */
+    public ArrayList<Station> getHiddenStations() {
+        synchronized (stations) {
+            return new ArrayList<>(hiddenStations);
+        }
+    }
+
+    /**
+     * Put the Pokemon or station onto a random empty path cell
+     *
+     * @param entity  The Pokemon or station
+     * @param type    The type of the entity, POKE or SUPP
+     * @param random  The random number generator
+     * @param exclude The cell which must not be picked, e.g. the location of
+     *                the player, can be null
+     * @return Whether the entity is placed, false if there is no empty path
+     */
+    public boolean placeEntity(Cell entity, char type, Random random, Cell exclude) {
+        while (true) {
+            Cell to = randomFreeCell(random, exclude);
+            if (to == null)
+                return false;
+
+            // the cell may be taken before its region is locked, pick again
+            ReentrantLock lock = getLock(to);
+            lock.lock();
+            try {
+                if (getType(to) != PATH)
+                    continue;
+                entity.setCoordinate(to);
+                setMap(entity, type);
+            } finally {
+                lock.unlock();
+            }
+            if (entity instanceof Pokemon) {
+                synchronized (pokemons) {
+                    removeSame(hiddenPokemons, entity);
+                }
+                addPokemon((Pokemon) entity);
+            } else {
+                synchronized (stations) {
+                    removeSame(hiddenStations, entity);
+                }
+                addStation((Station) entity);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Get the Pokemon or station standing on the given location
+     *
+     * @param cell The location
+     * @return The Pokemon or station, if it is not exist, return null
+     */
+    private Cell getOccupant(Cell cell) {
+        if (isOutOfBound(cell))
+            return null;
+        Stripe stripe = stripes[stripeOf(cell)];
+        stripe.lock();
+        try {
+            return stripe.getOccupant(index(cell.getM(), cell.getN()));
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Get the number of empty path cells
+     *
+     * @return The number of empty path cells
+     */
+    public int getNumOfFreeCells() {
+        int free = 0;
+        for (Stripe stripe : stripes)
+            free += stripe.free;
+        return free;
+    }
+
+    /**
+     * Pick a random empty path cell in constant time, a stripe is picked by
+     * its number of empty paths and then a cell of its list. The cell may be
+     * taken by the time it is returned, concurrent callers must use
+     * placeEntity() instead
+     *
+     * @param random  The random number generator
+     * @param exclude The cell which must not be picked, e.g. the location of
+     *                the player, can be null
+     * @return The empty path cell, if it is not exist, return null
+     */
+    public Cell randomFreeCell(Random random, Cell exclude) {
+        int excluded = -1, excludedStripe = -1;
+        if (exclude != null && !isOutOfBound(exclude)) {
+            excluded = index(exclude.getM(), exclude.getN());
+            excludedStripe = stripeOf(exclude);
+        }
+        while (true) {
+            int count = getNumOfFreeCells();
+            if (excluded >= 0 && grid[excluded] == PATH)
+                count--;
+            if (count <= 0)
+                return null;
+
+            int slot = random.nextInt(count);
+            for (int i = 0; i < STRIPES; i++) {
+                int free = numOfFreeCells(i, excluded, excludedStripe);
+                if (slot >= free) {
+                    slot -= free;
+                    continue;
+                }
+
+                // the counters are read again under the lock, pick again if they changed
+                Stripe stripe = stripes[i];
+                stripe.lock();
+                try {
+                    if (slot >= numOfFreeCells(i, excluded, excludedStripe))
+                        break;
+                    int[] cells = freeCells(i);
+
+                    // the excluded cell is swapped with the last one instead of being picked
+                    int index = cells[slot] == excluded ? cells[stripe.free - 1] : cells[slot];
+                    return new Cell(index / n, index % n);
+                } finally {
+                    stripe.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of empty path cells of a stripe which can be picked
+     *
+     * @param i        The stripe
+     * @param excluded The index of the cell which must not be picked, or -1
+     * @param stripe   The stripe of the excluded cell, or -1
+     * @return The number of empty path cells other than the excluded one
+     */
+    private int numOfFreeCells(int i, int excluded, int stripe) {
+        int free = stripes[i].free;
+        return i == stripe && grid[excluded] == PATH ? free - 1 : free;
+    }
+
+    /**
+     * Get the empty path cells of a stripe, listed on the first call by
+     * walking the regions mapped to the stripe. The lock of the stripe must be
+     * held
+     *
+     * @param i The stripe
+     * @return The empty path cells, the first free ones are valid
+     */
+    private int[] freeCells(int i) {
+        Stripe stripe = stripes[i];
+        if (stripe.freeCells != null)
+            return stripe.freeCells;
+        int[] slots = freeSlot;
+        if (slots == null)
+            synchronized (stripes) {
+                if ((slots = freeSlot) == null)
+                    freeSlot = slots = new int[grid.length];
+            }
+
+        // the list never grows beyond the cells which are not walls or the destination
+        int size = 1 << REGION_SHIFT, rows = (m + size - 1) >> REGION_SHIFT, cols = (n + size - 1) >> REGION_SHIFT;
+        int capacity = 0, free = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int row = 0; row < rows; row++) {
+                // the regions of the row mapped to the stripe are STRIPES apart
+                for (int col = (i - row * 31) & (STRIPES - 1); col < cols; col += STRIPES) {
+                    for (int a = row << REGION_SHIFT; a < Math.min(m, (row + 1) << REGION_SHIFT); a++) {
+                        for (int b = col << REGION_SHIFT; b < Math.min(n, (col + 1) << REGION_SHIFT); b++) {
+                            int index = a * n + b;
+                            if (pass == 0) {
+                                if (grid[index] != WALL && grid[index] != DEST)
+                                    capacity++;
+                            } else if (grid[index] == PATH) {
+                                slots[index] = free;
+                                stripe.freeCells[free++] = index;
+                            }
+                        }
+                    }
+                }
+            }
+            if (pass == 0)
+                stripe.freeCells = new int[capacity];
+        }
+        return stripe.freeCells;
+    }
+
+    /**
+     * Add the cell to the empty path cells of its stripe, if they are listed
+     *
+     * @param stripe The stripe of the cell
+     * @param index  The index of the cell, m * n + col
+     */
+    private void addFreeCell(Stripe stripe, int index) {
+        if (stripe.freeCells == null)
+            return;
+        freeSlot[index] = stripe.free;
+        stripe.freeCells[stripe.free] = index;
+    }
+
+    /**
+     * Remove the cell from the empty path cells of its stripe by moving the
+     * last one into its slot, if they are listed
+     *
+     * @param stripe The stripe of the cell
+     * @param index  The index of the cell, m * n + col
+     */
+    private void removeFreeCell(Stripe stripe, int index) {
+        if (stripe.freeCells == null)
+            return;
+        int slot = freeSlot[index];
+        int last = stripe.freeCells[stripe.free - 1];
+        stripe.freeCells[slot] = last;
+        freeSlot[last] = slot;
     }
 
     /**
@@ -93,10 +771,8 @@ public class Map {
      * @return The Pokemon at the given location, if it is not exist, return null
      */
     public Pokemon getPokemon(Cell cell) {
-        for (Pokemon pkm : this.pokemons)
-            if (cell.equals(pkm))
-                return pkm;
-        return null;
+        Cell occupant = getOccupant(cell);
+        return occupant instanceof Pokemon ? (Pokemon) occupant : null;
     }
 
     /**
@@ -106,10 +782,8 @@ public class Map {
      * @return The station at the given location, if it is not exist, return null
      */
     public Station getStation(Cell cell) {
-        for (Station stn : this.stations)
-            if (cell.equals(stn))
-                return stn;
-        return null;
+        Cell occupant = getOccupant(cell);
+        return occupant instanceof Station ? (Station) occupant : null;
     }
 
     /**
@@ -119,46 +793,104 @@ public class Map {
      * @return The number of Poke balls provided, if the supply station is not exist, return 0
      */
     public int getBall(Cell cell) {
-        for (Station stn : this.stations)
-            if (cell.equals(stn))
-                return stn.getBallsProvided();
-        return 0;
+        Station stn = getStation(cell);
+        return stn == null ? 0 : stn.getBallsProvided();
     }
 
     /**
-     * Add new pokemon to the ArrayList
+     * Add new pokemon to the ArrayList and index it by its location
      *
      * @param pkm The Pokemon which is going to be added
+     * @throws IllegalArgumentException If the Pokemon is not on a POKE cell
      */
     public void addPokemon(Pokemon pkm) {
-        pokemons.add(pkm);
+        indexEntity(pkm, POKE);
+        synchronized (pokemons) {
+            pokemons.add(pkm);
+        }
+    }
+
+    /**
+     * Index the Pokemon or station by its location
+     *
+     * @param entity The Pokemon or station
+     * @param type   The type of the entity, POKE or SUPP
+     * @throws IllegalArgumentException If the cell is not of the type
+     */
+    private void indexEntity(Cell entity, char type) {
+        if (isOutOfBound(entity) || getType(entity) != type)
+            throw new IllegalArgumentException("The cell " + entity + " is not '" + type + "'");
+        Stripe stripe = stripes[stripeOf(entity)];
+        stripe.lock();
+        try {
+            stripe.putOccupant(index(entity.getM(), entity.getN()), entity);
+            stripe.version++;
+        } finally {
+            stripe.unlock();
+        }
     }
 
     /**
-     * Get the pokemon ArrayList
+     * Get the Pokemons on the map, the list is a copy so it can be iterated
+     * while the Pokemons are taken off and put back
      *
-     * @return the pokemon ArrayList
+     * @return A copy of the pokemon ArrayList
      */
     public ArrayList<Pokemon> getExistingPokemons() {
-        return this.pokemons;
+        synchronized (pokemons) {
+            return new ArrayList<>(pokemons);
+        }
     }
 
     /**
-     * Add new station to the ArrayList
+     * Add new station to the ArrayList and index it by its location
      *
      * @param stn The station which is going to be added
+     * @throws IllegalArgumentException If the station is not on a SUPP cell
      */
     public void addStation(Station stn) {
-        stations.add(stn);
+        indexEntity(stn, SUPP);
+        synchronized (stations) {
+            stations.add(stn);
+        }
     }
 
     /**
-     * Get the supply station ArrayList
+     * Get the supply stations on the map, the list is a copy so it can be
+     * iterated while the stations are taken off and put back
      *
-     * @return the supply station ArrayList
+     * @return A copy of the supply station ArrayList
      */
     public ArrayList<Station> getExistingStations() {
-        return this.stations;
+        synchronized (stations) {
+            return new ArrayList<>(stations);
+        }
+    }
+
+    /**
+     * Get the distances between the starting point, the destination, the
+     * Pokemons and the stations. The table is computed once and kept until the
+     * map is changed, then only the distances the moved Pokemons and stations
+     * may change are computed again
+     *
+     * @return The distance table, null if the map has no starting point or
+     * destination
+     */
+    public DistanceTable getDistanceTable() {
+        if (start == null || destination == null)
+            return null;
+        DistanceTable table = distanceTable;
+        if (table != null && table.getVersion() == getVersion())
+            return table;
+        synchronized (distanceLock) {
+            long current = getVersion();
+            table = distanceTable;
+            if (table == null || table.getVersion() != current) {
+                table = table == null ? new DistanceTable(this, current) : table.update(this, current);
+                distanceTable = table;
+            }
+            return table;
+        }
     }
 
     /**
@@ -196,7 +928,7 @@ public class Map {
      * @return Whether the cell is wall
      */
     public boolean isWall(Cell cell) {
-        return map[cell.getM()][cell.getN()] == Map.WALL;
+        return grid[index(cell.getM(), cell.getN())] == WALL;
     }
 
     /**
@@ -206,7 +938,7 @@ public class Map {
      * @return Whether the cell is pokemon
      */
     public boolean isPokemon(Cell cell) {
-        return map[cell.getM()][cell.getN()] == Map.POKE;
+        return grid[index(cell.getM(), cell.getN())] == POKE;
     }
 
     /**
@@ -216,7 +948,7 @@ public class Map {
      * @return Whether the cell is supply station
      */
     public boolean isSupplyStation(Cell cell) {
-        return map[cell.getM()][cell.getN()] == Map.SUPP;
+        return grid[index(cell.getM(), cell.getN())] == SUPP;
     }
 
     /**
@@ -226,6 +958,6 @@ public class Map {
      * @return Whether the cell is the destination
      */
     public boolean isDestination(Cell cell) {
-        return map[cell.getM()][cell.getN()] == Map.DEST;
+        return grid[index(cell.getM(), cell.getN())] == DEST;
     }
 }
@@ -0,0 +1,55 @@
+package pokemon.game;
+
+/**
+ * This exception is thrown when the input file is written in invalid format,
+ * it tells where the error is
+ */
+public class MapFormatException extends Exception {
+
+    private final long line;
+    private final int column;
+    private final String reason;
+
+    /**
+     * Constructor
+     *
+     * @param line    The line of the error, starting from 1
+     * @param column  The column of the error, starting from 1
+     * @param message The description of the error
+     */
+    public MapFormatException(long line, int column, String message) {
+        super("line " + line + ", column " + column + ": " + message);
+        this.line = line;
+        this.column = column;
+        this.reason = message;
+    }
+
+    /**
+     * Get the same error moved down by the given number of lines, used when a
+     * part of the file is parsed on its own
+     *
+     * @param lines The number of lines before the part
+     * @return The error with the line in the whole file
+     */
+    MapFormatException shift(long lines) {
+        return new MapFormatException(line + lines, column, reason);
+    }
+
+    /**
+     * Get the line of the error
+     *
+     * @return The line of the error, starting from 1
+     */
+    public long getLine() {
+        return line;
+    }
+
+    /**
+     * Get the column of the error
+     *
+     * @return The column of the error, starting from 1
+     */
+    public int getColumn() {
+        return column;
+    }
+}
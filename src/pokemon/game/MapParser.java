@@ -0,0 +1,417 @@
+package pokemon.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class is responsible for parsing the input file, it tokenizes the
+ * bytes as they are read instead of splitting every line into strings, and
+ * reports the line and the column of any error. The bytes are either streamed
+ * from a channel or read from a memory-mapped region of the file
+ */
+class MapParser {
+
+    private static final int BUFFER_SIZE = 1 << 16, STRINGS = 1 << 12;
+    private static final long WINDOW_SIZE = 1 << 28;
+
+    private final ReadableByteChannel channel;
+    private final FileChannel file;
+    private long position, end;
+    private ByteBuffer buffer;
+    private final Charset charset = Charset.defaultCharset();
+    private final byte[][] stringKeys = new byte[STRINGS][];
+    private final String[] stringValues = new String[STRINGS];
+    private int numOfStrings = 0;
+    private byte[] field = new byte[64];
+    private long line = 1;
+    private int column = 1;
+
+    /**
+     * Constructor
+     *
+     * @param channel The input file
+     */
+    MapParser(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.file = null;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.buffer.flip();
+    }
+
+    /**
+     * Constructor, the region is memory-mapped window by window
+     *
+     * @param file  The input file
+     * @param start The offset where the region starts
+     * @param end   The offset where the region ends, exclusive
+     */
+    MapParser(FileChannel file, long start, long end) {
+        this.channel = null;
+        this.file = file;
+        this.position = start;
+        this.end = end;
+        this.buffer = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Get the offset of the next byte in the file, only for memory-mapped
+     * regions
+     *
+     * @return The offset of the next byte
+     */
+    long offset() {
+        return position - buffer.remaining();
+    }
+
+    /**
+     * Get the line of the next byte
+     *
+     * @return The line, starting from 1
+     */
+    long getLine() {
+        return line;
+    }
+
+    /**
+     * Parse the whole input file
+     *
+     * @return The map with all the Pokemons and stations
+     * @throws IOException        If the file cannot be read
+     * @throws MapFormatException If the file is written in invalid format
+     */
+    Map parse() throws IOException, MapFormatException {
+        Map map = parseGrid();
+        parseEntities(map);
+        return map;
+    }
+
+    /**
+     * Parse the dimension and the following M lines of the map
+     *
+     * @return The map without Pokemons and stations
+     * @throws IOException        If the file cannot be read
+     * @throws MapFormatException If the file is written in invalid format
+     */
+    Map parseGrid() throws IOException, MapFormatException {
+        int m = readInt();
+        expect(' ');
+        int n = readInt();
+        if (m <= 0 || n <= 0)
+            throw error("invalid dimension " + m + " " + n);
+        expectEndOfLine();
+
+        Map map = new Map(m, n);
+        byte[] row = new byte[n];
+        Cell start = null, destination = null;
+        for (int i = 0; i < m; i++) {
+            if (peek() == -1)
+                throw error("expected " + m + " lines of the map");
+
+            // copy as many cells as the buffer holds, then check them in the row
+            for (int j = 0; j < n; ) {
+                if (peek() == -1)
+                    throw error("expected " + n + " cells");
+                int count = Math.min(n - j, buffer.remaining());
+                buffer.get(row, j, count);
+                for (int k = j; k < j + count; k++) {
+                    byte c = row[k];
+                    if (c == Map.PATH || c == Map.WALL || c == Map.POKE || c == Map.SUPP)
+                        continue;
+                    if (c == Map.START)
+                        start = new Cell(i, k);
+                    else if (c == Map.DEST)
+                        destination = new Cell(i, k);
+                    else {
+                        column += k - j;
+                        throw error(isEndOfLine(c) ? "expected " + n + " cells" : "invalid cell '" + (char) (c & 0xff) + "'");
+                    }
+                }
+                column += count;
+                j += count;
+            }
+            map.loadRow(i, row);
+
+            // the characters after the n th column are ignored
+            while (!isEndOfLine(peek()))
+                next();
+            expectEndOfLine();
+        }
+        map.endLoad(start, destination);
+        return map;
+    }
+
+    /**
+     * Parse the Pokemons and stations until the end of the file
+     *
+     * @param map The map which the Pokemons and stations are added to
+     * @throws IOException        If the file cannot be read
+     * @throws MapFormatException If the file is written in invalid format
+     */
+    void parseEntities(Map map) throws IOException, MapFormatException {
+        for (Cell entity; (entity = parseEntity(map)) != null; ) {
+            if (entity instanceof Pokemon)
+                map.addPokemon((Pokemon) entity);
+            else
+                map.addStation((Station) entity);
+        }
+    }
+
+    /**
+     * Parse the Pokemons and stations until the end of the region
+     *
+     * @param map      The map which the locations are checked against, it is
+     *                 only read
+     * @param entities The list which the Pokemons and stations are added to
+     * @throws IOException        If the file cannot be read
+     * @throws MapFormatException If the region is written in invalid format
+     */
+    void parseEntities(Map map, ArrayList<Cell> entities) throws IOException, MapFormatException {
+        for (Cell entity; (entity = parseEntity(map)) != null; )
+            entities.add(entity);
+    }
+
+    /**
+     * Parse the next Pokemon or station, skipping the empty lines. It must
+     * stand on a cell of its own type
+     *
+     * @param map The map which the location is checked against
+     * @return The Pokemon or station, null at the end of the file
+     * @throws IOException        If the file cannot be read
+     * @throws MapFormatException If the file is written in invalid format
+     */
+    private Cell parseEntity(Map map) throws IOException, MapFormatException {
+        while (isEndOfLine(peek())) {
+            if (peek() == -1)
+                return null;
+            expectEndOfLine();
+        }
+
+        // <m,n>, followed by the balls provided or the Pokemon data
+        int at = column;
+        expect('<');
+        int m = readInt();
+        expect(',');
+        int n = readInt();
+        expect('>');
+        expectSeparator();
+
+        Cell entity;
+        int col = column;
+        int length = readField();
+        if (isEndOfLine(peek())) {
+            entity = new Station(m, n, parseInt(length, col));
+        } else {
+            String name = string(length);
+            expectSeparator();
+            String type = string(readField());
+            expectSeparator();
+            int power = readInt();
+            expectSeparator();
+            int ballsRequired = readInt();
+            entity = new Pokemon(m, n, name, type, power, ballsRequired);
+        }
+
+        char expected = entity instanceof Pokemon ? Map.POKE : Map.SUPP;
+        if (map.isOutOfBound(entity))
+            throw new MapFormatException(line, at, "<" + m + "," + n + "> is out of the map");
+        if (map.getType(entity) != expected)
+            throw new MapFormatException(line, at, "expected '" + expected + "' at <" + m + "," + n + ">, found '"
+                    + map.getType(entity) + "'");
+        expectEndOfLine();
+        return entity;
+    }
+
+    /**
+     * Refill the buffer from the channel, or map the next window of the region
+     *
+     * @return Whether there are bytes remaining
+     * @throws IOException If the file cannot be read
+     */
+    private boolean fill() throws IOException {
+        if (file != null) {
+            if (position >= end)
+                return false;
+            long size = Math.min(WINDOW_SIZE, end - position);
+            buffer = file.map(FileChannel.MapMode.READ_ONLY, position, size);
+            position += size;
+            return true;
+        }
+        buffer.compact();
+        int read = 0;
+        while (read == 0 && buffer.hasRemaining())
+            read = channel.read(buffer);
+        buffer.flip();
+        return buffer.hasRemaining();
+    }
+
+    /**
+     * Get the next byte without consuming it
+     *
+     * @return The next byte, -1 at the end of the file
+     * @throws IOException If the file cannot be read
+     */
+    private int peek() throws IOException {
+        if (!buffer.hasRemaining() && !fill())
+            return -1;
+        return buffer.get(buffer.position()) & 0xff;
+    }
+
+    /**
+     * Consume the next byte
+     *
+     * @return The next byte, -1 at the end of the file
+     * @throws IOException If the file cannot be read
+     */
+    private int next() throws IOException {
+        int c = peek();
+        if (c == -1)
+            return c;
+        buffer.position(buffer.position() + 1);
+        if (c == '\n') {
+            line++;
+            column = 1;
+        } else
+            column++;
+        return c;
+    }
+
+    private static boolean isEndOfLine(int c) {
+        return c == '\r' || c == '\n' || c == -1;
+    }
+
+    private void expect(char c) throws IOException, MapFormatException {
+        if (peek() != c)
+            throw error("expected '" + c + "'");
+        next();
+    }
+
+    /**
+     * Consume the ", " between two fields
+     */
+    private void expectSeparator() throws IOException, MapFormatException {
+        expect(',');
+        expect(' ');
+    }
+
+    /**
+     * Consume the line break, accept \n, \r\n or the end of the file
+     */
+    private void expectEndOfLine() throws IOException, MapFormatException {
+        if (peek() == '\r')
+            next();
+        if (peek() == '\n')
+            next();
+        else if (peek() != -1)
+            throw error("expected end of line");
+    }
+
+    /**
+     * Read an integer
+     *
+     * @return The integer
+     */
+    private int readInt() throws IOException, MapFormatException {
+        boolean negative = peek() == '-';
+        if (negative)
+            next();
+        if (peek() < '0' || peek() > '9')
+            throw error("expected a number");
+        long value = 0;
+        while (peek() >= '0' && peek() <= '9') {
+            value = value * 10 + (next() - '0');
+            if (value > Integer.MAX_VALUE)
+                throw error("number too large");
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Read the bytes until the next ',' or the end of the line into the field
+     * buffer
+     *
+     * @return The number of bytes read
+     */
+    private int readField() throws IOException, MapFormatException {
+        int length = 0;
+        while (peek() != ',' && !isEndOfLine(peek())) {
+            if (length == field.length)
+                field = Arrays.copyOf(field, length * 2);
+            field[length++] = (byte) next();
+        }
+        if (length == 0)
+            throw error("expected a field");
+        return length;
+    }
+
+    /**
+     * Parse the integer in the field buffer
+     *
+     * @param length The number of bytes in the field buffer
+     * @param col    The column where the field starts
+     * @return The integer
+     */
+    private int parseInt(int length, int col) throws MapFormatException {
+        long value = 0;
+        boolean negative = field[0] == '-';
+        if (negative && length == 1)
+            throw new MapFormatException(line, col + 1, "expected a number");
+        for (int i = negative ? 1 : 0; i < length; i++) {
+            if (field[i] < '0' || field[i] > '9')
+                throw new MapFormatException(line, col + i, "expected a number");
+            value = value * 10 + (field[i] - '0');
+            if (value > Integer.MAX_VALUE)
+                throw new MapFormatException(line, col + i, "number too large");
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Get the string in the field buffer, the same names and species share
+     * one string which is created only once
+     *
+     * @param length The number of bytes in the field buffer
+     * @return The string
+     */
+    private String string(int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++)
+            hash = 31 * hash + field[i];
+
+        // look up the open addressing table, give up sharing when it is 3/4 full
+        int mask = stringKeys.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            byte[] key = stringKeys[slot];
+            if (key == null) {
+                String s = new String(field, 0, length, charset);
+                if (numOfStrings < stringKeys.length * 3 / 4) {
+                    stringKeys[slot] = Arrays.copyOf(field, length);
+                    stringValues[slot] = s;
+                    numOfStrings++;
+                }
+                return s;
+            }
+            if (key.length == length && startsWith(field, key))
+                return stringValues[slot];
+        }
+    }
+
+    /**
+     * Check if the field starts with the key, Arrays.equals() only compares
+     * ranges from Java 9 on
+     */
+    private static boolean startsWith(byte[] field, byte[] key) {
+        for (int i = 0; i < key.length; i++)
+            if (field[i] != key[i])
+                return false;
+        return true;
+    }
+
+    private MapFormatException error(String message) {
+        return new MapFormatException(line, column, message);
+    }
+}
@@ -0,0 +1,142 @@
+package pokemon.game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * This class is responsible for loading very large input files through a
+ * memory-map. The M lines of the map are parsed straight into the map, and the
+ * Pokemons and stations are parsed in parallel chunks split at line breaks
+ */
+class MappedMapLoader {
+
+    /**
+     * The size of the entity section each chunk should have at least
+     */
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+    private final FileChannel file;
+
+    /**
+     * The result of parsing a chunk
+     */
+    private static final class Chunk {
+        final ArrayList<Cell> entities = new ArrayList<>();
+        long lines;
+        MapFormatException error;
+    }
+
+    /**
+     * Constructor
+     *
+     * @param file The input file
+     */
+    MappedMapLoader(FileChannel file) {
+        this.file = file;
+    }
+
+    /**
+     * Load the whole input file
+     *
+     * @return The map with all the Pokemons and stations
+     * @throws IOException        If the file cannot be read
+     * @throws MapFormatException If the file is written in invalid format
+     */
+    Map load() throws IOException, MapFormatException {
+        long size = file.size();
+        MapParser parser = new MapParser(file, 0, size);
+        Map map = parser.parseGrid();
+        long start = parser.offset();
+        long lines = parser.getLine() - 1;
+
+        // split the entity section at the line breaks
+        int parallelism = ForkJoinPool.commonPool().getParallelism();
+        int count = (int) Math.max(1, Math.min(parallelism * 4L, (size - start) / MIN_CHUNK_SIZE));
+        long[] bounds = new long[count + 1];
+        bounds[0] = start;
+        bounds[count] = size;
+        for (int i = 1; i < count; i++)
+            bounds[i] = Math.max(bounds[i - 1], nextLine(start + (size - start) * i / count, size));
+
+        ArrayList<Callable<Chunk>> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long from = bounds[i], to = bounds[i + 1];
+            tasks.add(() -> parseChunk(map, from, to));
+        }
+
+        // add the entities in the order of the file, the first error found
+        // in the file is reported with its line in the whole file
+        try {
+            for (Future<Chunk> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                Chunk chunk = future.get();
+                if (chunk.error != null)
+                    throw chunk.error.shift(lines);
+                lines += chunk.lines;
+                for (Cell entity : chunk.entities) {
+                    if (entity instanceof Pokemon)
+                        map.addPokemon((Pokemon) entity);
+                    else
+                        map.addStation((Station) entity);
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        return map;
+    }
+
+    /**
+     * Parse the entities of a chunk
+     *
+     * @param map  The map which the locations are checked against
+     * @param from The offset where the chunk starts
+     * @param to   The offset where the chunk ends, exclusive
+     * @return The result of the chunk
+     * @throws IOException If the file cannot be read
+     */
+    private Chunk parseChunk(Map map, long from, long to) throws IOException {
+        Chunk chunk = new Chunk();
+        MapParser parser = new MapParser(file, from, to);
+        try {
+            parser.parseEntities(map, chunk.entities);
+        } catch (MapFormatException e) {
+            chunk.error = e;
+        }
+        chunk.lines = parser.getLine() - 1;
+        return chunk;
+    }
+
+    /**
+     * Find the start of the line after the given offset
+     *
+     * @param offset The offset
+     * @param size   The size of the file
+     * @return The offset after the next '\n', or the size of the file
+     * @throws IOException If the file cannot be read
+     */
+    private long nextLine(long offset, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (offset < size) {
+            buffer.clear();
+            int read = file.read(buffer, offset);
+            if (read <= 0)
+                break;
+            for (int i = 0; i < read; i++)
+                if (buffer.get(i) == '\n')
+                    return offset + i + 1;
+            offset += read;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,543 @@
+package pokemon.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is responsible for finding the route from the starting point to
+ * the destination with the maximum score. The route is searched as a sequence
+ * of points of interest, i.e. the starting point, the destination, the
+ * Pokemons and the supply stations, with a depth-first branch and bound
+ * search. Each station gives its Poke balls once and each Pokemon is caught
+ * once, as the player moves onto them. The search can be split across a
+ * ForkJoinPool, the tasks share the best score found as the bound. It can
+ * also be given a time budget, the first route found is the greedy one and
+ * the best route so far is returned when the budget runs out
+ */
+public class PathFinder {
+
+    /**
+     * The maximum number of Pokemons and stations, the visited ones are
+     * stored as the bits of a long
+     */
+    public static final int MAX_ENTITIES = 64;
+
+    private static final int UNREACHABLE = DistanceTable.UNREACHABLE;
+    private static final int START = DistanceTable.START, DEST = DistanceTable.DEST;
+
+    /**
+     * The depth of the sequence until which every point of interest tried is
+     * forked as a task in a parallel search
+     */
+    private static final int SPLIT_DEPTH = 3;
+
+    /**
+     * The maximum number of states remembered with their fewest steps, about
+     * 80 bytes each. Once it is reached the states are no longer added, the
+     * search stays exact but may expand a state more than once
+     */
+    static final int MEMO_CAPACITY = 1 << 19;
+
+    private final Map map;
+    private final long seed;
+
+    //the points of interest, the entities start from index 2
+    private DistanceTable table;
+    private PlayerState.Tables entities;
+
+    //distances between the points of interest without passing any other one,
+    //and the distances to the destination passing any cell
+    private int[][] distances;
+    private int[][] neighbors;
+    private int[] toDestination;
+    private int[] nearest;
+    private long[] shortcuts;
+
+    //the order of the points of interest with the same gain, shuffled by the seed
+    private int[] rank;
+
+    //the search, the sequence of the best route is only recorded when the
+    //search runs on one thread
+    private ConcurrentHashMap<Node, Integer> visited;
+    private AtomicInteger visitedSize;
+    private AtomicInteger bestScore = new AtomicInteger(Integer.MIN_VALUE);
+    private int[] bestSequence;
+    private boolean recordSequence;
+    private int target;
+    private volatile boolean done;
+
+    //the time budget of an anytime search, the nodes are counted so that the
+    //clock is only read once in a while
+    private long deadline;
+    private boolean timed;
+    private int nodes;
+    private RouteListener listener;
+
+    /**
+     * A point of interest with the set of the visited entities
+     */
+    private static final class Node {
+        final int poi;
+        final long mask;
+
+        Node(int poi, long mask) {
+            this.poi = poi;
+            this.mask = mask;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Node))
+                return false;
+            Node s = (Node) o;
+            return s.poi == poi && s.mask == mask;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * poi + Long.hashCode(mask * 0x9E3779B97F4A7C15L);
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param map The game map, which is not modified
+     */
+    public PathFinder(Map map) {
+        this(map, 0);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param map  The game map, which is not modified
+     * @param seed The seed which orders the points of interest of the same
+     *             gain, the same seed gives the same route
+     */
+    public PathFinder(Map map, long seed) {
+        this.map = map;
+        this.seed = seed;
+    }
+
+    /**
+     * Find the route with the maximum score
+     *
+     * @return The player who has moved along the route, null if the
+     * destination cannot be reached
+     * @throws IllegalStateException If there are more than MAX_ENTITIES
+     *                               Pokemons and stations
+     */
+    public Player findBestRoute() {
+        if (!prepare())
+            return null;
+        return searchRoute(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Find the route with the maximum score, the search is split across the
+     * pool. The maximum score is found in parallel, then the route is found
+     * again on the calling thread with the maximum score as the bound, so that
+     * the route does not depend on the timing of the tasks. The second search
+     * only follows the branches which can reach the maximum score, on random
+     * maps of 10 to 30 entities it took from 2% to 32% of the time of the
+     * first one on a single core, so it weighs more as cores are added
+     *
+     * @param pool The pool running the search
+     * @return The player who has moved along the route, null if the
+     * destination cannot be reached
+     * @throws IllegalStateException If there are more than MAX_ENTITIES
+     *                               Pokemons and stations
+     */
+    public Player findBestRoute(ForkJoinPool pool) {
+        if (!prepare())
+            return null;
+        reset(Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+        pool.invoke(new Search(START, 0, 1, 0, 0, 0, 0L, 0, startSequence(), true));
+        int score = bestScore.get();
+        if (score == Integer.MIN_VALUE)
+            return null;
+        return searchRoute(score - 1, score);
+    }
+
+    /**
+     * Find the route with the maximum score within the time budget. The
+     * points of interest with the best immediate gain are tried first, so the
+     * first route found is the greedy one, and every better route found after
+     * it is passed to the listener. The search stops when the budget runs
+     * out, but not before the first route is found
+     *
+     * @param timeout  The time budget, which includes computing the distances
+     *                 of a map changed since the last search
+     * @param unit     The unit of the time budget
+     * @param listener The listener receiving the better routes as they are
+     *                 found, or null
+     * @return The player who has moved along the best route found, null if
+     * the destination cannot be reached
+     * @throws IllegalStateException If there are more than MAX_ENTITIES
+     *                               Pokemons and stations
+     */
+    public Player findBestRoute(long timeout, TimeUnit unit, RouteListener listener) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!prepare())
+            return null;
+        reset(Integer.MIN_VALUE, Integer.MAX_VALUE, true);
+        this.deadline = deadline;
+        this.timed = true;
+        this.nodes = 0;
+        this.listener = listener;
+        try {
+            new Search(START, 0, 1, 0, 0, 0, 0L, 0, startSequence(), false).invoke();
+        } finally {
+            this.timed = false;
+            this.listener = null;
+        }
+        return bestSequence == null ? null : replay(bestSequence);
+    }
+
+    /**
+     * Get the score of the route found by the last findBestRoute()
+     *
+     * @return The maximum score
+     */
+    public int getBestScore() {
+        return bestScore.get();
+    }
+
+    /**
+     * Get the distance table of the map and derive the tables of the search
+     *
+     * @return Whether the map has a starting point and a destination
+     */
+    private boolean prepare() {
+        table = map.getDistanceTable();
+        if (table == null)
+            return false;
+        if (table.size() - 2 > MAX_ENTITIES)
+            throw new IllegalStateException("at most " + MAX_ENTITIES + " Pokemons and stations are supported");
+        entities = new PlayerState.Tables(map, table);
+        computeDistances();
+        return true;
+    }
+
+    /**
+     * Search on the calling thread for the first route whose score reaches the
+     * target
+     *
+     * @param initialBound The score which a route must beat
+     * @param target       The score at which the search stops
+     * @return The player who has moved along the route, null if there is no
+     * route beating the initial bound
+     */
+    private Player searchRoute(int initialBound, int target) {
+        reset(initialBound, target, true);
+        new Search(START, 0, 1, 0, 0, 0, 0L, 0, startSequence(), false).invoke();
+        return bestSequence == null ? null : replay(bestSequence);
+    }
+
+    private void reset(int initialBound, int target, boolean recordSequence) {
+        this.visited = new ConcurrentHashMap<>();
+        this.visited.put(new Node(START, 0), 0);
+        this.visitedSize = new AtomicInteger(1);
+        this.bestScore = new AtomicInteger(initialBound);
+        this.bestSequence = null;
+        this.recordSequence = recordSequence;
+        this.target = target;
+        this.done = false;
+    }
+
+    private static int[] startSequence() {
+        int[] sequence = new int[16];
+        sequence[0] = START;
+        return sequence;
+    }
+
+    /**
+     * Derive the tables used by the search from the distance table
+     */
+    private void computeDistances() {
+        int size = table.size();
+        distances = new int[size][size];
+        toDestination = new int[size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++)
+                distances[i][j] = table.getDistance(i, j);
+            toDestination[i] = table.getDistanceToDestination(i);
+        }
+
+        //every point of interest is entered from another one, which is not the destination
+        nearest = new int[size];
+        for (int j = DEST; j < size; j++) {
+            nearest[j] = UNREACHABLE;
+            for (int i = 0; i < size; i++)
+                if (i != j && i != DEST)
+                    nearest[j] = Math.min(nearest[j], distances[i][j]);
+        }
+
+        //the entities which shorten the way from a point of interest to
+        //another one, when the player passes them as waypoints
+        shortcuts = new long[size];
+        for (int i = 0; i < size; i++)
+            for (int w = 2; w < size; w++) {
+                if (w == i || distances[i][w] == UNREACHABLE)
+                    continue;
+                for (int k = DEST; k < size; k++)
+                    if (k != i && k != w && distances[w][k] != UNREACHABLE
+                            && (long) distances[i][w] + distances[w][k] < distances[i][k]) {
+                        shortcuts[i] |= 1L << (w - 2);
+                        break;
+                    }
+            }
+
+        //the points of interest reachable from each one, nearest first
+        neighbors = new int[size][];
+        for (int i = 0; i < size; i++) {
+            int[] row = distances[i];
+            ArrayList<Integer> reachable = new ArrayList<>();
+            for (int j = DEST; j < size; j++)
+                if (j != i && row[j] != UNREACHABLE)
+                    reachable.add(j);
+            reachable.sort((a, b) -> Integer.compare(row[a], row[b]));
+            neighbors[i] = new int[reachable.size()];
+            for (int k = 0; k < reachable.size(); k++)
+                neighbors[i][k] = reachable.get(k);
+        }
+
+        ArrayList<Integer> shuffled = new ArrayList<>();
+        for (int i = 0; i < size; i++)
+            shuffled.add(i);
+        Collections.shuffle(shuffled, new Random(seed));
+        rank = new int[size];
+        for (int i = 0; i < size; i++)
+            rank[shuffled.get(i)] = i;
+    }
+
+    /**
+     * The search from a point of interest, it forks a task for every point of
+     * interest tried next until the split depth in a parallel search
+     */
+    private final class Search extends RecursiveAction {
+        private final int poi, depth, steps, balls, caught, maxPower;
+        private final long mask, species;
+        private final boolean parallel;
+        private int[] sequence;
+        private final int[] speciesGain = new int[MAX_ENTITIES];
+
+        /**
+         * Constructor
+         *
+         * @param poi      The current point of interest
+         * @param mask     The entities visited, bit i - 2 for the point of interest i
+         * @param depth    The length of the sequence so far
+         * @param steps    The steps so far
+         * @param balls    The Poke balls owned
+         * @param caught   The number of Pokemons caught
+         * @param species  The species caught
+         * @param maxPower The maximum combat power of the Pokemons caught
+         * @param sequence The sequence of points of interest so far
+         * @param parallel Whether the task forks the search
+         */
+        Search(int poi, long mask, int depth, int steps, int balls, int caught, long species, int maxPower, int[] sequence, boolean parallel) {
+            this.poi = poi;
+            this.mask = mask;
+            this.depth = depth;
+            this.steps = steps;
+            this.balls = balls;
+            this.caught = caught;
+            this.species = species;
+            this.maxPower = maxPower;
+            this.sequence = sequence;
+            this.parallel = parallel;
+        }
+
+        @Override
+        protected void compute() {
+            ArrayList<Search> tasks = parallel && depth <= SPLIT_DEPTH ? new ArrayList<>() : null;
+            search(poi, mask, depth, steps, balls, caught, species, maxPower, tasks);
+            if (tasks != null)
+                invokeAll(tasks);
+        }
+
+        /**
+         * Search the routes from the point of interest
+         *
+         * @param tasks The list which the tasks of the points of interest tried
+         *              next are added to, null to search them in this task
+         */
+        private void search(int poi, long mask, int depth, int steps, int balls, int caught, long species, int maxPower, ArrayList<Search> tasks) {
+            if (timed && bestSequence != null && (++nodes & 0xff) == 0 && System.nanoTime() - deadline > 0)
+                done = true;
+            if (done || toDestination[poi] == UNREACHABLE
+                    || bound(poi, mask, steps, balls, caught, species, maxPower) <= bestScore.get())
+                return;
+            if (depth + 1 > sequence.length)
+                sequence = Arrays.copyOf(sequence, sequence.length * 2);
+
+            //try the points of interest with the best immediate gain first
+            int[] order = neighbors[poi].clone();
+            int[] keys = new int[order.length];
+            for (int k = 0; k < order.length; k++) {
+                int next = order[k], gain = 0;
+                if (next != DEST && (mask & (1L << (next - 2))) == 0) {
+                    if (entities.getSpeciesBit(next) == 0)
+                        gain = entities.getBallsProvided(next);
+                    else if (balls >= entities.getBallsRequired(next))
+                        gain = Player.gainOfCatch(entities.getBallsRequired(next), entities.getPower(next),
+                                (species & entities.getSpeciesBit(next)) == 0, maxPower);
+                }
+                keys[k] = gain - distances[poi][next];
+                for (int l = k; l > 0 && (keys[l] > keys[l - 1] || (keys[l] == keys[l - 1] && rank[order[l]] < rank[order[l - 1]])); l--) {
+                    int t = keys[l];
+                    keys[l] = keys[l - 1];
+                    keys[l - 1] = t;
+                    t = order[l];
+                    order[l] = order[l - 1];
+                    order[l - 1] = t;
+                }
+            }
+
+            for (int next : order) {
+                int nextSteps = steps + distances[poi][next];
+                sequence[depth] = next;
+                if (next == DEST) {
+                    reached(balls + 5 * caught + 10 * Long.bitCount(species) + maxPower - nextSteps, depth + 1);
+                    continue;
+                }
+
+                //move onto the entity, it is only a waypoint if it has been visited
+                //or it is a Pokemon which cannot be caught yet
+                long bit = 1L << (next - 2);
+                long nextMask = mask;
+                int nextBalls = balls, nextCaught = caught, nextMaxPower = maxPower;
+                long nextSpecies = species;
+                if ((mask & bit) == 0) {
+                    if (entities.getSpeciesBit(next) == 0) {
+                        nextMask |= bit;
+                        nextBalls += entities.getBallsProvided(next);
+                    } else if (balls >= entities.getBallsRequired(next)) {
+                        nextMask |= bit;
+                        nextBalls -= entities.getBallsRequired(next);
+                        nextCaught++;
+                        nextSpecies |= entities.getSpeciesBit(next);
+                        nextMaxPower = Math.max(maxPower, entities.getPower(next));
+                    }
+                }
+
+                //a waypoint is only worth it if it shortens the way to somewhere
+                if (nextMask == mask && (shortcuts[poi] & bit) == 0)
+                    continue;
+
+                //a state reached before with fewer steps has the same future
+                Node node = new Node(next, nextMask);
+                Integer seen = visited.get(node);
+                if (seen != null && seen <= nextSteps)
+                    continue;
+                if (seen != null || visitedSize.getAndIncrement() < MEMO_CAPACITY)
+                    visited.merge(node, nextSteps, Math::min);
+                if (tasks != null)
+                    tasks.add(new Search(next, nextMask, depth + 1, nextSteps, nextBalls, nextCaught, nextSpecies, nextMaxPower,
+                            Arrays.copyOf(sequence, depth + 1), true));
+                else
+                    search(next, nextMask, depth + 1, nextSteps, nextBalls, nextCaught, nextSpecies, nextMaxPower, null);
+            }
+        }
+
+        /**
+         * Record the route reaching the destination if it beats the best one
+         *
+         * @param score  The score of the route
+         * @param length The length of the sequence
+         */
+        private void reached(int score, int length) {
+            if (!recordSequence) {
+                bestScore.accumulateAndGet(score, Math::max);
+            } else if (score > bestScore.get()) {
+                bestScore.set(score);
+                bestSequence = Arrays.copyOf(sequence, length);
+                done = score >= target;
+                if (listener != null)
+                    listener.routeFound(replay(bestSequence));
+            }
+        }
+
+        /**
+         * Get the upper bound of the score of the routes from the state. It is
+         * the smaller one of two bounds, every entity left is visited without
+         * any step, or every entity visited costs at least the distance from
+         * its nearest point of interest
+         *
+         * @return The upper bound of the score
+         */
+        private int bound(int poi, long mask, int steps, int balls, int caught, long species, int maxPower) {
+            int ballsLeft = entities.getTotalBalls();
+            for (int i = 2; i < table.size(); i++)
+                if ((mask & (1L << (i - 2))) != 0 || nearest[i] == UNREACHABLE)
+                    ballsLeft -= entities.getBallsProvided(i);
+
+            //every entity visited adds its own gain, apart from the species which
+            //count once and the maximum combat power which is raised by one Pokemon
+            int free = ballsLeft, paid = 0, powerGain = 0, maxPowerLeft = maxPower;
+            long speciesLeft = species;
+            int maxBalls = balls + ballsLeft;
+            Arrays.fill(speciesGain, 0);
+            for (int i = 2; i < table.size(); i++) {
+                if ((mask & (1L << (i - 2))) != 0 || nearest[i] == UNREACHABLE)
+                    continue;
+                if (entities.getSpeciesBit(i) == 0) {
+                    paid += Math.max(0, entities.getBallsProvided(i) - nearest[i]);
+                    continue;
+                }
+                if (entities.getBallsRequired(i) > maxBalls)
+                    continue;
+                int gain = 5 - entities.getBallsRequired(i) - nearest[i];
+                free += Math.max(0, 5 - entities.getBallsRequired(i));
+                paid += Math.max(0, gain);
+                maxPowerLeft = Math.max(maxPowerLeft, entities.getPower(i));
+                if ((species & entities.getSpeciesBit(i)) == 0) {
+                    speciesLeft |= entities.getSpeciesBit(i);
+                    int id = Long.numberOfTrailingZeros(entities.getSpeciesBit(i));
+                    speciesGain[id] = Math.max(speciesGain[id], Math.max(0, gain + 10) - Math.max(0, gain));
+                    gain += 10;
+                }
+                if (entities.getPower(i) > maxPower)
+                    powerGain = Math.max(powerGain, Math.max(0, gain + entities.getPower(i) - maxPower) - Math.max(0, gain));
+            }
+            for (int gain : speciesGain)
+                paid += gain;
+            int score = balls + 5 * caught + 10 * Long.bitCount(species) + maxPower - steps;
+            free += 10 * Long.bitCount(speciesLeft & ~species) + maxPowerLeft - maxPower - toDestination[poi];
+            paid += powerGain - nearest[DEST];
+            return score + Math.min(free, paid);
+        }
+    }
+
+    /**
+     * Move a player along the sequence of points of interest on a copy of the
+     * map as it was when the distances were computed, the stations and the
+     * Pokemons caught are removed from the copy once they are visited
+     *
+     * @param seq The sequence of points of interest
+     * @return The player
+     */
+    private Player replay(int[] seq) {
+        Map scratch = table.copyMap();
+        Player player = new Player();
+        player.move(table.getPoint(START), scratch);
+        for (int k = 1; k < seq.length; k++)
+            for (Cell c : table.getPath(seq[k - 1], seq[k])) {
+                int before = player.getNumOfPokemons();
+                boolean station = scratch.isSupplyStation(c);
+                player.move(c, scratch);
+                if (station || player.getNumOfPokemons() > before)
+                    scratch.setMap(c, Map.PATH);
+            }
+        return player;
+    }
+}
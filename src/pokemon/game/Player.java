@@ -1,6 +1,15 @@
 package pokemon.game;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 
 /**
  * This class is responsible for storing player data and perform operations
@@ -10,11 +19,16 @@ public class Player {
 
     private int balls;
     private ArrayList<Pokemon> pokemons;
-    private ArrayList<Cell> route;
+    private Route route;
+
+    //the subscores are maintained as the Pokemons are caught
+    private HashMap<String, Integer> species;
+    private int maxPower;
 
     {
         pokemons = new ArrayList<Pokemon>();
-        route = new ArrayList<Cell>();
+        route = new Route();
+        species = new HashMap<String, Integer>();
     }
 
     /**
@@ -32,8 +46,9 @@ public class Player {
         this.balls = p.balls;
         this.pokemons.clear();
         this.pokemons.addAll(p.pokemons);
-        this.route.clear();
-        this.route.addAll(p.route);
+        this.route = new Route(p.route);
+        this.species.putAll(p.species);
+        this.maxPower = p.maxPower;
     }
 
     /**
@@ -42,10 +57,7 @@ public class Player {
      * @return The current location of the player
      */
     public Cell currentPos() {
-        if (this.route.isEmpty())
-            return null;
-        else
-            return this.route.get(this.route.size() - 1);
+        return this.route.last();
     }
 
     /**
@@ -67,12 +79,13 @@ public class Player {
     }
 
     /**
-     * Get the route of player
+     * Get the route of player, the steps are stored compactly so the list is
+     * a copy with one Cell per step
      *
-     * @return The route of player
+     * @return A copy of the route of player
      */
     public ArrayList<Cell> getRoute() {
-        return route;
+        return new ArrayList<>(route);
     }
 
     /**
@@ -84,6 +97,20 @@ public class Player {
         return getNB() + 5 * getNP() + 10 * getNS() + getMCP() - getSteps();
     }
 
+    /**
+     * Calculate the change of the score when a Pokemon is caught, not counting
+     * the step onto it
+     *
+     * @param ballsRequired The Poke balls required by the Pokemon
+     * @param power         The power of the Pokemon
+     * @param newSpecies    Whether no Pokemon of its species has been caught
+     * @param maxPower      The maximum power of the Pokemons caught
+     * @return The change of the score
+     */
+    static int gainOfCatch(int ballsRequired, int power, boolean newSpecies, int maxPower) {
+        return 5 - ballsRequired + (newSpecies ? 10 : 0) + Math.max(0, power - maxPower);
+    }
+
     /**
      * Get number of Poke balls
      *
@@ -108,11 +135,7 @@ public class Player {
      * @return number of species of Pokemons
      */
     private int getNS() {
-        ArrayList<String> temp = new ArrayList<String>();
-        for (Pokemon pokemon : pokemons)
-            if (!temp.contains(pokemon.getType()))
-                temp.add(pokemon.getType());
-        return temp.size();
+        return this.species.size();
     }
 
     /**
@@ -121,11 +144,7 @@ public class Player {
      * @return maximum combat power of all Pokemons
      */
     private int getMCP() {
-        int temp = 0;
-        for (Pokemon pokemon : pokemons)
-            if (pokemon.getPower() > temp)
-                temp = pokemon.getPower();
-        return temp;
+        return this.maxPower;
     }
 
     /**
@@ -151,7 +170,7 @@ public class Player {
             if (pkm.canBeCaught(this.balls))
                 catchPokemon(pkm);
         }
-        this.route.add(c);
+        this.route.append(c);
     }
 
     /**
@@ -162,10 +181,47 @@ public class Player {
     public void catchPokemon(Pokemon pkm) {
         pokemons.add(pkm);
         balls-=pkm.getBallsRequired();
+        count(pkm);
+    }
+
+    /**
+     * Update the number of species and the maximum combat power with the
+     * Pokemon caught
+     *
+     * @param pkm The pokemon caught
+     */
+    private void count(Pokemon pkm) {
+        species.merge(pkm.getType(), 1, Integer::sum);
+        if (pkm.getPower() > maxPower)
+            maxPower = pkm.getPower();
     }
 
+    /**
+     * Get the Pokemons caught, the list is a copy so that modifying it does
+     * not break the subscores
+     *
+     * @return A copy of the Pokemons caught
+     */
     public ArrayList<Pokemon> getPokemons() {
-        return pokemons;
+        return new ArrayList<>(pokemons);
+    }
+
+    /**
+     * Restore the player from a snapshot
+     *
+     * @param balls    Number of Poke balls
+     * @param pokemons The Pokemons caught
+     * @param route    The route of player
+     */
+    void restore(int balls, List<Pokemon> pokemons, Route route) {
+        this.balls = balls;
+        this.pokemons.clear();
+        this.pokemons.addAll(pokemons);
+        this.species.clear();
+        this.maxPower = 0;
+        for (Pokemon pkm : pokemons)
+            count(pkm);
+        this.route = route;
     }
 
     /**
@@ -177,12 +233,49 @@ public class Player {
      */
     @Override
     public String toString() {
-        String s = getScore() + "\n" + getNB() + ":" + getNP() + ":" + getNS() + ":" + getMCP() + "\n";
-        for (int i = 0; i < this.route.size() - 1; i++)
-            s += this.route.get(i).toString() + "->";
-        if (!this.route.isEmpty())
-            s += this.route.get(this.route.size() - 1).toString();
-        return s;
+        StringBuilder s = new StringBuilder();
+        try {
+            writeTo(s);
+        } catch (IOException e) {
+            //a StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return s.toString();
+    }
+
+    /**
+     * Write the scores, subscores and the path in the same format as
+     * toString(), the path is written step by step without building the
+     * whole string
+     *
+     * @param out The destination
+     * @throws IOException If the destination cannot be written
+     */
+    public void writeTo(Appendable out) throws IOException {
+        out.append(Integer.toString(getScore())).append('\n');
+        out.append(Integer.toString(getNB())).append(':').append(Integer.toString(getNP())).append(':')
+                .append(Integer.toString(getNS())).append(':').append(Integer.toString(getMCP())).append('\n');
+        boolean first = true;
+        for (Cell cell : this.route) {
+            if (!first)
+                out.append("->");
+            out.append('<').append(Integer.toString(cell.getM())).append(',')
+                    .append(Integer.toString(cell.getN())).append('>');
+            first = false;
+        }
+    }
+
+    /**
+     * Write the scores, subscores and the path in the same format as
+     * toString() through a buffer, the stream is flushed but not closed
+     *
+     * @param out The destination
+     * @throws IOException If the destination cannot be written
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        writeTo(writer);
+        writer.flush();
     }
 
     /**
@@ -0,0 +1,396 @@
+package pokemon.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * This class is responsible for storing the state of a player during a search
+ * without the objects kept by Player. The Pokemons caught and the stations
+ * visited are bitmasks, bit i - 2 for the point of interest i of the distance
+ * table, and the balls, location and subscores are primitive fields, so that a
+ * copy or a hash code costs a few words whatever the number of Pokemons. The
+ * route is not stored
+ */
+public final class PlayerState {
+
+    /**
+     * The maximum number of Pokemons and stations which can be indexed
+     */
+    public static final int MAX_INDEX = Long.SIZE;
+
+    /**
+     * This class is responsible for the tables shared by the states of a map
+     * and by the searches, the data of each Pokemon and station is looked up
+     * by its index in the distance table. The starting point and the
+     * destination have the indices 0 and 1 and no data
+     */
+    public static final class Tables {
+
+        private final int cols, numOfCells;
+        private final Cell[] entities;
+        private final long[] speciesBits;
+        private final int[] power, ballsRequired, ballsProvided;
+        private final int totalBalls;
+
+        // the cell of each point of interest, stored as m * n + col
+        private final int[] cells;
+
+        // the index of the Pokemon or station on each cell, NONE if there is
+        // neither. Only built for the searches walking cell by cell
+        private volatile int[] entityAt;
+        private static final int NONE = -1;
+
+        /**
+         * Constructor, the tables of the map as it is now
+         *
+         * @param map The game map
+         * @throws IllegalStateException If the map has no starting point or
+         *                               destination, or there are more than
+         *                               MAX_INDEX Pokemons and stations
+         */
+        public Tables(Map map) {
+            this(map, map.getDistanceTable());
+        }
+
+        /**
+         * Constructor
+         *
+         * @param map    The game map
+         * @param points The distance table of the map
+         * @throws IllegalStateException If the table is null, or there are
+         *                               more than MAX_INDEX Pokemons and
+         *                               stations
+         */
+        Tables(Map map, DistanceTable points) {
+            if (points == null)
+                throw new IllegalStateException("the map has no starting point or destination");
+            int size = points.size();
+            if (size - 2 > MAX_INDEX)
+                throw new IllegalStateException("at most " + MAX_INDEX + " Pokemons and stations are supported");
+            Cell dimension = map.getDimension();
+            cols = dimension.getN();
+            numOfCells = dimension.getM() * cols;
+            cells = new int[size];
+            entities = new Cell[size];
+            speciesBits = new long[size];
+            power = new int[size];
+            ballsRequired = new int[size];
+            ballsProvided = new int[size];
+
+            //the species are numbered in the order they are found
+            HashMap<String, Long> species = new HashMap<>();
+            int balls = 0;
+            for (int i = 2; i < size; i++) {
+                entities[i] = points.getEntity(i);
+                cells[i] = index(points.getPoint(i));
+                if (entities[i] instanceof Station) {
+                    ballsProvided[i] = ((Station) entities[i]).getBallsProvided();
+                    balls += ballsProvided[i];
+                } else {
+                    Pokemon pkm = (Pokemon) entities[i];
+                    Long bit = species.get(pkm.getType());
+                    if (bit == null) {
+                        bit = 1L << species.size();
+                        species.put(pkm.getType(), bit);
+                    }
+                    speciesBits[i] = bit;
+                    power[i] = pkm.getPower();
+                    ballsRequired[i] = pkm.getBallsRequired();
+                }
+            }
+            totalBalls = balls;
+        }
+
+        /**
+         * Get the number of points of interest, including the starting point
+         * and the destination
+         *
+         * @return The number of points of interest
+         */
+        public int size() {
+            return entities.length;
+        }
+
+        /**
+         * Get the Pokemon or station of the index
+         *
+         * @param i The index of the point of interest
+         * @return The Pokemon or station, null for the starting point and the
+         * destination
+         */
+        public Cell getEntity(int i) {
+            return entities[i];
+        }
+
+        /**
+         * Get the bit of the species of the Pokemon
+         *
+         * @param i The index of the point of interest
+         * @return The bit of the species, 0 if it is not a Pokemon
+         */
+        public long getSpeciesBit(int i) {
+            return speciesBits[i];
+        }
+
+        /**
+         * Get the power of the Pokemon
+         *
+         * @param i The index of the point of interest
+         * @return The power, 0 if it is not a Pokemon
+         */
+        public int getPower(int i) {
+            return power[i];
+        }
+
+        /**
+         * Get the Poke balls required to catch the Pokemon
+         *
+         * @param i The index of the point of interest
+         * @return The Poke balls required, 0 if it is not a Pokemon
+         */
+        public int getBallsRequired(int i) {
+            return ballsRequired[i];
+        }
+
+        /**
+         * Get the Poke balls provided by the station
+         *
+         * @param i The index of the point of interest
+         * @return The Poke balls provided, 0 if it is not a station
+         */
+        public int getBallsProvided(int i) {
+            return ballsProvided[i];
+        }
+
+        /**
+         * Get the Poke balls provided by all the stations
+         *
+         * @return The Poke balls
+         */
+        public int getTotalBalls() {
+            return totalBalls;
+        }
+
+        /**
+         * Get the Pokemon or station on the cell, the grid of the indices is
+         * built on the first call
+         *
+         * @param cell The cell, stored as m * n + col
+         * @return The index of the point of interest, -1 if there is none
+         */
+        public int entityAt(int cell) {
+            int[] at = entityAt;
+            if (at == null) {
+                synchronized (this) {
+                    if ((at = entityAt) == null) {
+                        at = new int[numOfCells];
+                        Arrays.fill(at, NONE);
+                        for (int i = 2; i < cells.length; i++)
+                            at[cells[i]] = i;
+                        entityAt = at;
+                    }
+                }
+            }
+            return at[cell];
+        }
+
+        private int index(Cell cell) {
+            return cell.getM() * cols + cell.getN();
+        }
+    }
+
+    private final Tables tables;
+    private long caught, visited, species;
+    private int balls, maxPower, steps;
+    private int m, n;
+
+    /**
+     * Constructor, the player stands at the starting point
+     *
+     * @param tables The tables of the map
+     * @param start  The starting point
+     */
+    public PlayerState(Tables tables, Cell start) {
+        this.tables = tables;
+        this.m = start.getM();
+        this.n = start.getN();
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param s The state being copied
+     */
+    public PlayerState(PlayerState s) {
+        this.tables = s.tables;
+        this.caught = s.caught;
+        this.visited = s.visited;
+        this.species = s.species;
+        this.balls = s.balls;
+        this.maxPower = s.maxPower;
+        this.steps = s.steps;
+        this.m = s.m;
+        this.n = s.n;
+    }
+
+    /**
+     * Move to the given location, a station gives its Poke balls the first
+     * time and a Pokemon is caught if there are enough Poke balls
+     *
+     * @param c The given location
+     */
+    public void move(Cell c) {
+        move(c.getM(), c.getN());
+    }
+
+    /**
+     * Move to the given location, a station gives its Poke balls the first
+     * time and a Pokemon is caught if there are enough Poke balls
+     *
+     * @param m The row of the location
+     * @param n The column of the location
+     */
+    public void move(int m, int n) {
+        int i = tables.entityAt(m * tables.cols + n);
+        if (i != Tables.NONE) {
+            long bit = 1L << i - 2;
+            if (tables.speciesBits[i] == 0) {
+                if ((visited & bit) == 0) {
+                    visited |= bit;
+                    balls += tables.ballsProvided[i];
+                }
+            } else if ((caught & bit) == 0 && balls >= tables.ballsRequired[i]) {
+                caught |= bit;
+                balls -= tables.ballsRequired[i];
+                species |= tables.speciesBits[i];
+                maxPower = Math.max(maxPower, tables.power[i]);
+            }
+        }
+        this.m = m;
+        this.n = n;
+        steps++;
+    }
+
+    /**
+     * Get the current location of the player
+     *
+     * @return The current location of the player
+     */
+    public Cell currentPos() {
+        return new Cell(m, n);
+    }
+
+    /**
+     * Get the number of Poke balls
+     *
+     * @return Number of Poke balls
+     */
+    public int getNumOfBalls() {
+        return balls;
+    }
+
+    /**
+     * Get the number of pokemons
+     *
+     * @return the number of pokemons
+     */
+    public int getNumOfPokemons() {
+        return Long.bitCount(caught);
+    }
+
+    /**
+     * Get the steps so far
+     *
+     * @return Steps
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * Get the Pokemons caught, bit i - 2 for the point of interest i
+     *
+     * @return The bitmask of the Pokemons caught
+     */
+    public long getCaught() {
+        return caught;
+    }
+
+    /**
+     * Get the stations visited, bit i - 2 for the point of interest i
+     *
+     * @return The bitmask of the stations visited
+     */
+    public long getVisited() {
+        return visited;
+    }
+
+    /**
+     * Check if the Pokemon has been caught
+     *
+     * @param i The index of the point of interest
+     * @return True if it has been caught
+     */
+    public boolean isCaught(int i) {
+        return (caught & 1L << i - 2) != 0;
+    }
+
+    /**
+     * Get the Pokemons caught in the order of their indices
+     *
+     * @return The Pokemons caught
+     */
+    public List<Pokemon> getPokemons() {
+        ArrayList<Pokemon> result = new ArrayList<>(Long.bitCount(caught));
+        for (long bits = caught; bits != 0; bits &= bits - 1)
+            result.add((Pokemon) tables.entities[Long.numberOfTrailingZeros(bits) + 2]);
+        return result;
+    }
+
+    /**
+     * Calculate the score of the player, the same as Player.getScore()
+     *
+     * @return The total score of the player
+     */
+    public int getScore() {
+        return balls + 5 * Long.bitCount(caught) + 10 * Long.bitCount(species) + maxPower - steps;
+    }
+
+    /**
+     * Two states are equal if the player stands at the same location with the
+     * same Poke balls, Pokemons and stations visited, the steps are not
+     * compared
+     *
+     * @param o The other object
+     * @return True if they are equal
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof PlayerState))
+            return false;
+        PlayerState s = (PlayerState) o;
+        return caught == s.caught && visited == s.visited && balls == s.balls && m == s.m && n == s.n;
+    }
+
+    /**
+     * Override the hashCode method in order to identify the state, the steps
+     * are not included
+     *
+     * @return The hash code of the state
+     */
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + Long.hashCode(caught);
+        result = prime * result + Long.hashCode(visited);
+        result = prime * result + balls;
+        result = prime * result + m;
+        result = prime * result + n;
+        return result;
+    }
+}
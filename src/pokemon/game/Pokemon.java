@@ -24,6 +24,24 @@ public class Pokemon extends Cell {
         this.ballsRequired = Integer.parseInt(data[4]);
     }
 
+    /**
+     * Constructor
+     *
+     * @param m             The row of the Pokemon
+     * @param n             The column of the Pokemon
+     * @param name          The Pokemon name
+     * @param type          The Pokemon species
+     * @param power         The combat power
+     * @param ballsRequired The Poke balls required to catch the Pokemon
+     */
+    public Pokemon(int m, int n, String name, String type, int power, int ballsRequired) {
+        super(m, n);
+        this.name = name;
+        this.type = type;
+        this.power = power;
+        this.ballsRequired = ballsRequired;
+    }
+
     /**
      * Get the Pokemon name
      *
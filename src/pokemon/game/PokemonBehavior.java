@@ -0,0 +1,80 @@
+package pokemon.game;
+
+import java.util.ArrayList;
+
+/**
+ * This class is responsible for the behavior of a Pokemon on the map, which
+ * walks around every 1 to 2 second(s) and respawns 3 to 5 seconds after the
+ * player failed to catch it
+ */
+class PokemonBehavior extends Behavior {
+
+    private final Pokemon pokemon;
+
+    /**
+     * Constructor
+     *
+     * @param pkm The Pokemon driven by this behavior
+     */
+    PokemonBehavior(Pokemon pkm) {
+        this.pokemon = pkm;
+    }
+
+    @Override
+    Cell entity() {
+        return pokemon;
+    }
+
+    /**
+     * Trigger the catch event
+     */
+    @Override
+    void playerEntered(WorldTicker ticker, long now) {
+        Game game = ticker.getGame();
+        System.out.println("Trying to catch " + pokemon.getPokemonName() + "!");
+
+        //remove the pokemon from the map
+        ticker.getListener().entityRemoved(pokemon);
+        game.map.removeEntity(pokemon);
+        hidden = true;
+
+        boolean caught = ticker.caughtSinceLastTick();
+        if (!caught && pokemon.canBeCaught(game.player.getNumOfBalls())) {
+            game.player.catchPokemon(pokemon);
+            caught = true;
+        }
+        ticker.getListener().pokemonEncountered(pokemon, caught);
+
+        //if successfully catch the pokemon, it leaves the world, else it respawns in 3 to 5 seconds
+        if (caught)
+            ticker.cancel(this);
+        else
+            ticker.schedule(this, now + 3000 + ticker.getRandom().nextInt(2000));
+    }
+
+    /**
+     * Respawn the hidden pokemon, or make the pokemon walk around
+     */
+    @Override
+    void timerExpired(WorldTicker ticker, long now) {
+        Game game = ticker.getGame();
+        if (hidden) {
+            //if there is no empty path, try again when the timer expires next time
+            if (game.map.placeEntity(pokemon, Map.POKE, ticker.getRandom(), game.player.currentPos())) {
+                ticker.getListener().entityPlaced(pokemon);
+                hidden = false;
+            }
+        } else {
+            ArrayList<Cell> cells = new ArrayList<>();
+            for (Cell c : new Cell[]{pokemon.up(), pokemon.down(), pokemon.left(), pokemon.right()})
+                if (!game.map.isOutOfBound(c) && game.map.getType(c) == Map.PATH)
+                    cells.add(c);
+            if (!cells.isEmpty()) {
+                ticker.getListener().entityRemoved(pokemon);
+                game.map.moveEntity(pokemon, cells.get(ticker.getRandom().nextInt(cells.size())), Map.POKE);
+                ticker.getListener().entityPlaced(pokemon);
+            }
+        }
+        ticker.schedule(this, now + 1000 + ticker.getRandom().nextInt(1000));
+    }
+}
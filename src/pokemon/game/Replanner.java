@@ -0,0 +1,459 @@
+package pokemon.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * This class is responsible for keeping a shortest route from the location of
+ * the player to the destination while the Pokemons and stations move around.
+ * It is a D* Lite search from the destination towards the player, the search
+ * results are kept between the plans and only the cells whose cost changed
+ * are repaired. A step costs 1, plus the score lost if the player is forced to
+ * catch a Pokemon which is not worth its Poke balls. The changed cells are
+ * reported through the WorldListener events, a caller keeping a replanner adds
+ * it as a listener of the WorldTicker driving the entities. The game itself
+ * does not keep one. A change of the player only repairs the cells with a
+ * penalty and the cells of the Pokemons, never the whole grid
+ * <p>
+ * The route only heads for the destination, it does not go out of its way to
+ * catch Pokemons or visit stations. The route maximising the score is found by
+ * PathFinder, which is run again instead of being repaired
+ */
+public class Replanner implements WorldListener {
+
+    private static final int INF = Integer.MAX_VALUE;
+
+    private final Game game;
+
+    //the map and the player of the game which the search is for, both are
+    //replaced when a snapshot is loaded
+    private Map map;
+    private Player player;
+    private int rows, cols, goal;
+    private boolean[] blocked;
+
+    //the search, g and rhs of each cell and the open list as a binary heap of
+    //cells, with the position of each cell in the heap or -1
+    private int[] g, rhs, penalty;
+    private long[] keys;
+    private int[] heap, heapIndex;
+    private int heapSize, km, last;
+
+    //the cells changed since the last plan, each cell is queued once, one
+    //bit per cell
+    private int[] pending;
+    private int numOfPending;
+    private long[] queued;
+
+    //the cells with a penalty, with the position of each cell in the list or
+    //-1, they are repaired again when the player changes
+    private int[] penalised, penalisedSlot;
+    private int numOfPenalised;
+
+    //the state of the player which the penalties are computed for
+    private boolean playerChanged = true;
+    private int lastBalls = -1, lastCaught = -1;
+    private long expanded = 0, lastPlanNanos = 0;
+
+    /**
+     * Constructor
+     *
+     * @param game The game, whose map is not modified
+     */
+    public Replanner(Game game) {
+        this.game = game;
+        reset();
+    }
+
+    /**
+     * Start the search again for the map and the player of the game
+     */
+    private void reset() {
+        map = game.map;
+        player = game.player;
+        Cell dimension = map.getDimension();
+        rows = dimension.getM();
+        cols = dimension.getN();
+        int size = rows * cols;
+        byte[] grid = map.getGrid();
+        blocked = new boolean[size];
+        for (int i = 0; i < size; i++)
+            blocked[i] = grid[i] == Map.WALL;
+        goal = index(map.getDestination());
+
+        g = new int[size];
+        rhs = new int[size];
+        penalty = new int[size];
+        keys = new long[size];
+        heap = new int[size];
+        heapIndex = new int[size];
+        Arrays.fill(g, INF);
+        Arrays.fill(rhs, INF);
+        Arrays.fill(heapIndex, -1);
+        heapSize = 0;
+        km = 0;
+        pending = new int[16];
+        numOfPending = 0;
+        queued = new long[(size + 63) >> 6];
+        penalised = new int[16];
+        penalisedSlot = new int[size];
+        Arrays.fill(penalisedSlot, -1);
+        numOfPenalised = 0;
+        playerChanged = true;
+
+        Cell pos = player.currentPos();
+        last = pos == null ? index(map.getStart()) : index(pos);
+        rhs[goal] = 0;
+        push(goal, key(goal));
+    }
+
+    /**
+     * Get the shortest route from the location of the player to the
+     * destination, the search is repaired for the changes since the last plan
+     *
+     * @return The locations after the location of the player up to the
+     * destination, null if the destination cannot be reached
+     */
+    public synchronized List<Cell> getPlan() {
+        int start = replan();
+        if (g[start] == INF)
+            return null;
+        ArrayList<Cell> plan = new ArrayList<>();
+        for (int cell = start; cell != goal && plan.size() < g.length; ) {
+            cell = bestSuccessor(cell);
+            plan.add(new Cell(cell / cols, cell % cols));
+        }
+        return plan;
+    }
+
+    /**
+     * Get the next step of the shortest route to the destination
+     *
+     * @return The next location, null if the destination cannot be reached
+     * or the player is standing on it
+     */
+    public synchronized Cell getNextStep() {
+        int start = replan();
+        if (g[start] == INF || start == goal)
+            return null;
+        int next = bestSuccessor(start);
+        return new Cell(next / cols, next % cols);
+    }
+
+    /**
+     * Get the cost of the route from the location of the player to the
+     * destination, i.e. the steps plus the score lost on the way
+     *
+     * @return The cost, Integer.MAX_VALUE if the destination cannot be reached
+     */
+    public synchronized int getCost() {
+        return g[replan()];
+    }
+
+    /**
+     * Get the number of cells expanded by the plans so far
+     *
+     * @return The number of cells expanded
+     */
+    public synchronized long getExpanded() {
+        return expanded;
+    }
+
+    /**
+     * Get the time taken by the last plan to repair the search
+     *
+     * @return The time in nanoseconds
+     */
+    public synchronized long getLastPlanNanos() {
+        return lastPlanNanos;
+    }
+
+    /**
+     * The cell of the entity will change, it is repaired by the next plan
+     *
+     * @param entity The Pokemon or supply station being removed
+     */
+    @Override
+    public synchronized void entityRemoved(Cell entity) {
+        if (game.map == map)
+            addPending(index(entity));
+    }
+
+    /**
+     * The cell of the entity has changed, it is repaired by the next plan
+     *
+     * @param entity The Pokemon or supply station being placed
+     */
+    @Override
+    public synchronized void entityPlaced(Cell entity) {
+        if (game.map == map)
+            addPending(index(entity));
+    }
+
+    /**
+     * The Poke balls of the player may have changed, so may the penalties of
+     * all the Pokemons
+     *
+     * @param pkm    The Pokemon encountered
+     * @param caught Whether the Pokemon is caught
+     */
+    @Override
+    public synchronized void pokemonEncountered(Pokemon pkm, boolean caught) {
+        playerChanged = true;
+    }
+
+    /**
+     * The Poke balls of the player have changed, so may the penalties of all
+     * the Pokemons
+     *
+     * @param stn The supply station visited
+     */
+    @Override
+    public synchronized void stationVisited(Station stn) {
+        playerChanged = true;
+    }
+
+    /**
+     * Apply the changes since the last plan and repair the search
+     *
+     * @return The location of the player
+     */
+    private int replan() {
+        long begin = System.nanoTime();
+        if (game.map != map || game.player != player)
+            reset();
+
+        //the heuristic is relative to the player, the keys in the open list
+        //stay valid by raising all the new keys by the distance moved
+        Cell pos = player.currentPos();
+        int start = pos == null ? last : index(pos);
+        km += heuristic(last, start);
+        last = start;
+
+        //a move onto an entity may change the player without any event
+        if (player.getNumOfBalls() != lastBalls || player.getNumOfPokemons() != lastCaught)
+            playerChanged = true;
+        if (playerChanged) {
+            playerChanged = false;
+            lastBalls = player.getNumOfBalls();
+            lastCaught = player.getNumOfPokemons();
+            for (int i = 0; i < numOfPenalised; i++)
+                addPending(penalised[i]);
+            for (Pokemon pkm : map.getExistingPokemons())
+                if (!map.isOutOfBound(pkm))
+                    addPending(index(pkm));
+        }
+
+        if (numOfPending > 0) {
+            HashSet<String> species = new HashSet<>();
+            int maxPower = 0;
+            for (Pokemon pkm : player.getPokemons()) {
+                species.add(pkm.getType());
+                maxPower = Math.max(maxPower, pkm.getPower());
+            }
+            for (int k = 0; k < numOfPending; k++) {
+                int cell = pending[k];
+                queued[cell >> 6] &= ~(1L << cell);
+                int p = penaltyOf(cell, species, maxPower);
+                if (p == penalty[cell])
+                    continue;
+                //the cost of entering the cell has changed, so have the costs of its neighbours
+                setPenalty(cell, p);
+                for (int dir = 0; dir < 4; dir++) {
+                    int u = neighbour(cell, dir);
+                    if (u >= 0)
+                        updateVertex(u);
+                }
+            }
+            numOfPending = 0;
+        }
+
+        computeShortestPath(start);
+        lastPlanNanos = System.nanoTime() - begin;
+        return start;
+    }
+
+    /**
+     * Queue the cell to be repaired by the next plan, unless it is queued
+     */
+    private void addPending(int cell) {
+        if ((queued[cell >> 6] & 1L << cell) != 0)
+            return;
+        queued[cell >> 6] |= 1L << cell;
+        if (numOfPending == pending.length)
+            pending = Arrays.copyOf(pending, numOfPending * 2);
+        pending[numOfPending++] = cell;
+    }
+
+    /**
+     * Set the penalty of the cell, and keep the list of the cells with a
+     * penalty, a cell leaves it by swapping the last one into its slot
+     */
+    private void setPenalty(int cell, int p) {
+        if (penalty[cell] == 0 && p != 0) {
+            if (numOfPenalised == penalised.length)
+                penalised = Arrays.copyOf(penalised, numOfPenalised * 2);
+            penalisedSlot[cell] = numOfPenalised;
+            penalised[numOfPenalised++] = cell;
+        } else if (penalty[cell] != 0 && p == 0) {
+            int slot = penalisedSlot[cell], moved = penalised[--numOfPenalised];
+            penalised[slot] = moved;
+            penalisedSlot[moved] = slot;
+            penalisedSlot[cell] = -1;
+        }
+        penalty[cell] = p;
+    }
+
+    /**
+     * Get the score lost by entering the cell, a Pokemon which can be caught
+     * is caught, and its Poke balls may be worth more than the Pokemon
+     */
+    private int penaltyOf(int cell, HashSet<String> species, int maxPower) {
+        Pokemon pkm = map.getPokemon(new Cell(cell / cols, cell % cols));
+        if (pkm == null || !pkm.canBeCaught(player.getNumOfBalls()))
+            return 0;
+        int gain = Player.gainOfCatch(pkm.getBallsRequired(), pkm.getPower(), !species.contains(pkm.getType()), maxPower);
+        return Math.max(0, -gain);
+    }
+
+    private int cost(int cell) {
+        return 1 + penalty[cell];
+    }
+
+    private void updateVertex(int u) {
+        if (blocked[u])
+            return;
+        if (u != goal) {
+            int best = INF;
+            for (int dir = 0; dir < 4; dir++) {
+                int s = neighbour(u, dir);
+                if (s >= 0 && !blocked[s] && g[s] != INF)
+                    best = Math.min(best, cost(s) + g[s]);
+            }
+            rhs[u] = best;
+        }
+        if (heapIndex[u] >= 0)
+            remove(u);
+        if (g[u] != rhs[u])
+            push(u, key(u));
+    }
+
+    private void computeShortestPath(int start) {
+        while (heapSize > 0 && (keys[heap[0]] < key(start) || rhs[start] != g[start])) {
+            int u = heap[0];
+            long oldKey = keys[u], newKey = key(u);
+            expanded++;
+            if (oldKey < newKey) {
+                remove(u);
+                push(u, newKey);
+            } else if (g[u] > rhs[u]) {
+                g[u] = rhs[u];
+                remove(u);
+                for (int dir = 0; dir < 4; dir++) {
+                    int s = neighbour(u, dir);
+                    if (s >= 0)
+                        updateVertex(s);
+                }
+            } else {
+                g[u] = INF;
+                updateVertex(u);
+                for (int dir = 0; dir < 4; dir++) {
+                    int s = neighbour(u, dir);
+                    if (s >= 0)
+                        updateVertex(s);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the neighbour of the cell on the shortest route to the destination
+     */
+    private int bestSuccessor(int cell) {
+        int best = -1;
+        long bestCost = Long.MAX_VALUE;
+        for (int dir = 0; dir < 4; dir++) {
+            int s = neighbour(cell, dir);
+            if (s >= 0 && !blocked[s] && g[s] != INF && (long) cost(s) + g[s] < bestCost) {
+                bestCost = (long) cost(s) + g[s];
+                best = s;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Get the key of the cell in the open list, the smaller one of g and rhs
+     * plus the heuristic, then the smaller one of g and rhs, packed into a
+     * long so that the keys are compared at once
+     */
+    private long key(int cell) {
+        int k2 = Math.min(g[cell], rhs[cell]);
+        long k1 = k2 == INF ? INF : Math.min(INF, (long) k2 + heuristic(last, cell) + km);
+        return k1 << 32 | k2;
+    }
+
+    private int heuristic(int a, int b) {
+        return Math.abs(a / cols - b / cols) + Math.abs(a % cols - b % cols);
+    }
+
+    private int neighbour(int cell, int dir) {
+        return DistanceTable.neighbour(cell, dir, rows, cols);
+    }
+
+    private int index(Cell cell) {
+        return map.index(cell.getM(), cell.getN());
+    }
+
+    private void push(int cell, long key) {
+        keys[cell] = key;
+        heap[heapSize] = cell;
+        heapIndex[cell] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private void remove(int cell) {
+        int i = heapIndex[cell];
+        heapIndex[cell] = -1;
+        if (--heapSize == i)
+            return;
+        int moved = heap[heapSize];
+        heap[i] = moved;
+        heapIndex[moved] = i;
+        siftUp(i);
+        if (heapIndex[moved] == i)
+            siftDown(i);
+    }
+
+    private void siftUp(int i) {
+        int cell = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (keys[heap[parent]] <= keys[cell])
+                break;
+            heap[i] = heap[parent];
+            heapIndex[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = cell;
+        heapIndex[cell] = i;
+    }
+
+    private void siftDown(int i) {
+        int cell = heap[i];
+        while (2 * i + 1 < heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && keys[heap[child + 1]] < keys[heap[child]])
+                child++;
+            if (keys[heap[child]] >= keys[cell])
+                break;
+            heap[i] = heap[child];
+            heapIndex[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = cell;
+        heapIndex[cell] = i;
+    }
+}
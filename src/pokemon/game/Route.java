@@ -0,0 +1,193 @@
+package pokemon.game;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class is responsible for storing the route of the player without one
+ * Cell object per step. The route is either packed as one long per step, or
+ * delta encoded as one direction byte per step with a checkpoint every
+ * CHECKPOINT_INTERVAL steps and at every jump. It is a read-only list, the
+ * cells are created when they are read
+ */
+final class Route extends AbstractList<Cell> {
+
+    private static final int CHECKPOINT_INTERVAL = 64;
+
+    //the directions of the delta encoding, a checkpoint step is stored as STAY
+    private static final byte UP = 0, DOWN = 1, LEFT = 2, RIGHT = 3, STAY = 4;
+    private static final int[] DM = {-1, 1, 0, 0, 0}, DN = {0, 0, -1, 1, 0};
+
+    private final boolean compact;
+    private int size = 0;
+    private long last;
+
+    //packed route
+    private long[] cells;
+
+    //delta encoded route
+    private byte[] steps;
+    private int[] checkpointIndices;
+    private long[] checkpointCells;
+    private int numOfCheckpoints = 0;
+
+    /**
+     * Constructor, the route is delta encoded
+     */
+    Route() {
+        this(true);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param compact Whether the route is delta encoded instead of packed
+     */
+    Route(boolean compact) {
+        this.compact = compact;
+        if (compact) {
+            steps = new byte[16];
+            checkpointIndices = new int[4];
+            checkpointCells = new long[4];
+        } else
+            cells = new long[16];
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param r The route being copied
+     */
+    Route(Route r) {
+        this.compact = r.compact;
+        this.size = r.size;
+        this.last = r.last;
+        if (compact) {
+            steps = Arrays.copyOf(r.steps, Math.max(16, r.size));
+            checkpointIndices = Arrays.copyOf(r.checkpointIndices, Math.max(4, r.numOfCheckpoints));
+            checkpointCells = Arrays.copyOf(r.checkpointCells, Math.max(4, r.numOfCheckpoints));
+            numOfCheckpoints = r.numOfCheckpoints;
+        } else
+            cells = Arrays.copyOf(r.cells, Math.max(16, r.size));
+    }
+
+    /**
+     * Append the location to the end of the route
+     *
+     * @param c The location
+     */
+    void append(Cell c) {
+        long cell = pack(c.getM(), c.getN());
+        if (compact) {
+            if (size == steps.length)
+                steps = Arrays.copyOf(steps, size * 2);
+            byte step = size == 0 ? -1 : direction(last, cell);
+            if (step < 0 || size - checkpointIndices[numOfCheckpoints - 1] >= CHECKPOINT_INTERVAL) {
+                if (numOfCheckpoints == checkpointIndices.length) {
+                    checkpointIndices = Arrays.copyOf(checkpointIndices, numOfCheckpoints * 2);
+                    checkpointCells = Arrays.copyOf(checkpointCells, numOfCheckpoints * 2);
+                }
+                checkpointIndices[numOfCheckpoints] = size;
+                checkpointCells[numOfCheckpoints++] = cell;
+                step = STAY;
+            }
+            steps[size] = step;
+        } else {
+            if (size == cells.length)
+                cells = Arrays.copyOf(cells, size * 2);
+            cells[size] = cell;
+        }
+        last = cell;
+        size++;
+    }
+
+    /**
+     * Get the last location of the route
+     *
+     * @return The last location, null if the route is empty
+     */
+    Cell last() {
+        return size == 0 ? null : new Cell(row(last), column(last));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Cell get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        long cell;
+        if (compact) {
+            //replay the steps from the nearest checkpoint before the index
+            int k = Arrays.binarySearch(checkpointIndices, 0, numOfCheckpoints, index);
+            if (k < 0)
+                k = -k - 2;
+            cell = checkpointCells[k];
+            for (int i = checkpointIndices[k] + 1; i <= index; i++)
+                cell = move(cell, steps[i]);
+        } else
+            cell = cells[index];
+        return new Cell(row(cell), column(cell));
+    }
+
+    @Override
+    public Iterator<Cell> iterator() {
+        return new Iterator<Cell>() {
+            private int i = 0, k = 0;
+            private long cell;
+
+            @Override
+            public boolean hasNext() {
+                return i < size;
+            }
+
+            @Override
+            public Cell next() {
+                if (i >= size)
+                    throw new NoSuchElementException();
+                if (!compact)
+                    cell = cells[i];
+                else if (k < numOfCheckpoints && checkpointIndices[k] == i)
+                    cell = checkpointCells[k++];
+                else
+                    cell = move(cell, steps[i]);
+                i++;
+                return new Cell(row(cell), column(cell));
+            }
+        };
+    }
+
+    private static long pack(int m, int n) {
+        return ((long) m << 32) | (n & 0xffffffffL);
+    }
+
+    private static int row(long cell) {
+        return (int) (cell >> 32);
+    }
+
+    private static int column(long cell) {
+        return (int) cell;
+    }
+
+    /**
+     * Get the direction from one location to an adjacent one
+     *
+     * @return The direction, -1 if the locations are not adjacent
+     */
+    private static byte direction(long from, long to) {
+        int dm = row(to) - row(from), dn = column(to) - column(from);
+        for (byte d = UP; d <= STAY; d++)
+            if (DM[d] == dm && DN[d] == dn)
+                return d;
+        return -1;
+    }
+
+    private static long move(long cell, byte step) {
+        return pack(row(cell) + DM[step], column(cell) + DN[step]);
+    }
+}
@@ -0,0 +1,17 @@
+package pokemon.game;
+
+/**
+ * This interface is responsible for receiving the routes found by a search
+ * which is still running, e.g. to show the best route so far to the user
+ */
+public interface RouteListener {
+
+    /**
+     * Called on the searching thread each time a route with a higher score is
+     * found
+     *
+     * @param player The player who has moved along the route, it is not used
+     *               by the search any more
+     */
+    void routeFound(Player player);
+}
@@ -0,0 +1,389 @@
+package pokemon.game;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * This class is responsible for writing and reading the binary snapshot of
+ * the game state. The map grid is stored as raw bytes after a header with the
+ * counters of the map, so that it is restored without reading any cell, and
+ * the names and species are stored once in a string table.
+ *
+ * Layout, all numbers are big-endian ints:
+ * magic "PKMS", version, M, N, start, destination, the number of stripes and
+ * the empty path cells of each stripe, the CRC-32 of the header from start on
+ * and of the grid, the M * N cell types, string table, Pokemons, stations,
+ * hidden Pokemons, hidden stations, player balls, caught Pokemons, route. The
+ * hidden Pokemons and stations are the ones waiting to respawn, they respawn
+ * after the usual delay once loaded.
+ *
+ * A snapshot which is truncated or not consistent is rejected with an
+ * IOException, a grid larger than the file is rejected before it is allocated
+ * and a grid or counters which do not match the checksum are rejected
+ */
+final class Snapshot {
+
+    static final int MAGIC = 0x504B4D53, VERSION = 3;
+
+    private static final int BUFFER_SIZE = 1 << 16, MAX_STRING = 1 << 16;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final ReadableByteChannel in;
+    private final WritableByteChannel out;
+
+    private Snapshot(ReadableByteChannel in, WritableByteChannel out) {
+        this.in = in;
+        this.out = out;
+        if (in != null)
+            buffer.flip();
+    }
+
+    /**
+     * Write the game state
+     *
+     * @param game    The game
+     * @param channel The output channel
+     * @throws IOException If the snapshot cannot be written
+     */
+    static void write(Game game, WritableByteChannel channel) throws IOException {
+        Snapshot s = new Snapshot(null, channel);
+        Map map = game.map;
+        Player player = game.player;
+        s.putInt(MAGIC);
+        s.putInt(VERSION);
+
+        Cell dimension = map.getDimension();
+        s.putInt(dimension.getM());
+        s.putInt(dimension.getN());
+        int[] free = map.getFreeCounts();
+        s.putCell(map.getStart());
+        s.putCell(map.getDestination());
+        s.putInt(free.length);
+        for (int count : free)
+            s.putInt(count);
+        s.putInt(checksum(map.getGrid(), map.getStart(), map.getDestination(), free));
+        s.putBytes(map.getGrid());
+
+        // the caught Pokemons are written with the player, not as hidden
+        List<Pokemon> pokemons = map.getExistingPokemons();
+        List<Station> stations = map.getExistingStations();
+        List<Pokemon> caught = player.getPokemons();
+        IdentityHashMap<Pokemon, Integer> caughtIds = new IdentityHashMap<>();
+        for (Pokemon pkm : caught)
+            caughtIds.put(pkm, -1);
+        ArrayList<Pokemon> hiddenPokemons = new ArrayList<>();
+        for (Pokemon pkm : map.getHiddenPokemons())
+            if (!caughtIds.containsKey(pkm))
+                hiddenPokemons.add(pkm);
+        List<Station> hiddenStations = map.getHiddenStations();
+
+        // the string table of all the names and species
+        ArrayList<String> strings = new ArrayList<>();
+        HashMap<String, Integer> stringIds = new HashMap<>();
+        for (Pokemon pkm : pokemons)
+            addStrings(pkm, strings, stringIds);
+        for (Pokemon pkm : hiddenPokemons)
+            addStrings(pkm, strings, stringIds);
+        for (Pokemon pkm : caught)
+            addStrings(pkm, strings, stringIds);
+        s.putInt(strings.size());
+        for (String string : strings)
+            s.putString(string);
+
+        // the caught Pokemons still on the map are written as references
+        s.putInt(pokemons.size());
+        int id = 0;
+        for (Pokemon pkm : pokemons) {
+            if (caughtIds.containsKey(pkm))
+                caughtIds.put(pkm, id);
+            s.putPokemon(pkm, stringIds);
+            id++;
+        }
+        s.putStations(stations);
+        s.putInt(hiddenPokemons.size());
+        for (Pokemon pkm : hiddenPokemons)
+            s.putPokemon(pkm, stringIds);
+        s.putStations(hiddenStations);
+
+        s.putInt(player.getNumOfBalls());
+        s.putInt(caught.size());
+        for (Pokemon pkm : caught) {
+            id = caughtIds.get(pkm);
+            s.putInt(id);
+            if (id < 0)
+                s.putPokemon(pkm, stringIds);
+        }
+        List<Cell> route = player.getRoute();
+        s.putInt(route.size());
+        for (Cell cell : route)
+            s.putCell(cell);
+        s.flush();
+    }
+
+    /**
+     * Read the game state into the game
+     *
+     * @param game    The game
+     * @param channel The input channel
+     * @throws IOException If the snapshot cannot be read or is not supported
+     */
+    static void read(Game game, ReadableByteChannel channel) throws IOException {
+        Snapshot s = new Snapshot(channel, null);
+        if (s.getInt() != MAGIC)
+            throw new IOException("The file is not a game snapshot.");
+        int version = s.getInt();
+        if (version != VERSION)
+            throw new IOException("The snapshot version " + version + " is not supported.");
+
+        int m = s.getInt(), n = s.getInt();
+        if (m <= 0 || n <= 0 || (long) m * n > Integer.MAX_VALUE - 8)
+            throw corrupt("invalid dimension " + m + " x " + n);
+        Cell start = s.getCell(m, n, true), destination = s.getCell(m, n, true);
+        int stripes = s.getInt();
+        if (stripes != Map.STRIPES)
+            throw corrupt(stripes + " stripes instead of " + Map.STRIPES);
+        int[] free = new int[stripes];
+        for (int i = 0; i < stripes; i++)
+            free[i] = s.getInt();
+        int checksum = s.getInt();
+        if (channel instanceof SeekableByteChannel) {
+            SeekableByteChannel file = (SeekableByteChannel) channel;
+            if (file.size() - file.position() + s.buffer.remaining() < (long) m * n)
+                throw new EOFException("The snapshot is truncated.");
+        }
+
+        // the cells are checked at once against the checksum instead of one by one
+        byte[] grid = new byte[m * n];
+        s.getBytes(grid);
+        if (checksum(grid, start, destination, free) != checksum)
+            throw corrupt("the grid or its counters do not match the checksum");
+        Map map = new Map(m, n, grid, free, start, destination);
+
+        ArrayList<String> strings = new ArrayList<>();
+        for (int i = s.getCount("strings"); i > 0; i--)
+            strings.add(s.getString());
+
+        ArrayList<Pokemon> pokemons = new ArrayList<>();
+        for (int i = s.getCount("Pokemons"); i > 0; i--) {
+            Pokemon pkm = s.getPokemon(strings, m, n);
+            if (map.getType(pkm) != Map.POKE || map.getPokemon(pkm) != null)
+                throw corrupt("no free Pokemon cell at " + pkm);
+            pokemons.add(pkm);
+            map.addPokemon(pkm);
+        }
+        for (int i = s.getCount("stations"); i > 0; i--) {
+            Station stn = s.getStation(m, n);
+            if (map.getType(stn) != Map.SUPP || map.getStation(stn) != null)
+                throw corrupt("no free station cell at " + stn);
+            map.addStation(stn);
+        }
+        for (int i = s.getCount("hidden Pokemons"); i > 0; i--)
+            map.addHidden(s.getPokemon(strings, m, n));
+        for (int i = s.getCount("hidden stations"); i > 0; i--)
+            map.addHidden(s.getStation(m, n));
+
+        int balls = s.getInt();
+        if (balls < 0)
+            throw corrupt("negative number of Poke balls " + balls);
+        ArrayList<Pokemon> caught = new ArrayList<>();
+        for (int i = s.getCount("caught Pokemons"); i > 0; i--) {
+            int id = s.getInt();
+            if (id < -1 || id >= pokemons.size())
+                throw corrupt("invalid Pokemon id " + id);
+            caught.add(id >= 0 ? pokemons.get(id) : s.getPokemon(strings, m, n));
+        }
+        Route route = new Route();
+        for (int i = s.getCount("route cells"); i > 0; i--)
+            route.append(s.getCell(m, n, false));
+
+        Player player = new Player();
+        player.restore(balls, caught, route);
+        game.map = map;
+        game.player = player;
+    }
+
+    /**
+     * Compute the CRC-32 of the grid and the counters stored with it
+     */
+    private static int checksum(byte[] grid, Cell start, Cell destination, int[] free) {
+        ByteBuffer header = ByteBuffer.allocate(4 * (5 + free.length));
+        for (Cell cell : new Cell[]{start, destination}) {
+            header.putInt(cell == null ? -1 : cell.getM());
+            header.putInt(cell == null ? -1 : cell.getN());
+        }
+        header.putInt(free.length);
+        for (int count : free)
+            header.putInt(count);
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, header.capacity());
+        crc.update(grid, 0, grid.length);
+        return (int) crc.getValue();
+    }
+
+    private static IOException corrupt(String message) {
+        return new IOException("The snapshot is corrupt: " + message + ".");
+    }
+
+    private static void addStrings(Pokemon pkm, ArrayList<String> strings, HashMap<String, Integer> stringIds) {
+        for (String string : new String[]{pkm.getPokemonName(), pkm.getType()})
+            if (!stringIds.containsKey(string)) {
+                stringIds.put(string, strings.size());
+                strings.add(string);
+            }
+    }
+
+    private void putPokemon(Pokemon pkm, HashMap<String, Integer> stringIds) throws IOException {
+        putCell(pkm);
+        putInt(stringIds.get(pkm.getPokemonName()));
+        putInt(stringIds.get(pkm.getType()));
+        putInt(pkm.getPower());
+        putInt(pkm.getBallsRequired());
+    }
+
+    private Pokemon getPokemon(ArrayList<String> strings, int rows, int cols) throws IOException {
+        Cell cell = getCell(rows, cols, false);
+        String name = getString(strings), type = getString(strings);
+        int power = getInt(), balls = getInt();
+        if (balls < 0)
+            throw corrupt("negative number of Poke balls " + balls + " required");
+        return new Pokemon(cell.getM(), cell.getN(), name, type, power, balls);
+    }
+
+    private void putStations(List<Station> stations) throws IOException {
+        putInt(stations.size());
+        for (Station stn : stations) {
+            putCell(stn);
+            putInt(stn.getBallsProvided());
+        }
+    }
+
+    private Station getStation(int rows, int cols) throws IOException {
+        Cell cell = getCell(rows, cols, false);
+        int balls = getInt();
+        if (balls < 0)
+            throw corrupt("negative number of Poke balls " + balls + " provided");
+        return new Station(cell.getM(), cell.getN(), balls);
+    }
+
+    /**
+     * Write the location, -1 -1 if it is null
+     */
+    private void putCell(Cell cell) throws IOException {
+        putInt(cell == null ? -1 : cell.getM());
+        putInt(cell == null ? -1 : cell.getN());
+    }
+
+    /**
+     * Read a location which must be inside the map
+     *
+     * @param rows     The number of rows of the map
+     * @param cols     The number of columns of the map
+     * @param nullable Whether -1 -1 is accepted as null
+     */
+    private Cell getCell(int rows, int cols, boolean nullable) throws IOException {
+        int m = getInt(), n = getInt();
+        if (nullable && m == -1 && n == -1)
+            return null;
+        if (m < 0 || m >= rows || n < 0 || n >= cols)
+            throw corrupt("location <" + m + "," + n + "> is out of the map");
+        return new Cell(m, n);
+    }
+
+    /**
+     * Read the number of the following items, the items are read one by one
+     * so a wrong count ends with a truncated snapshot instead of a large
+     * allocation
+     */
+    private int getCount(String items) throws IOException {
+        int count = getInt();
+        if (count < 0)
+            throw corrupt("negative number of " + items);
+        return count;
+    }
+
+    /**
+     * Read the id of a string in the string table
+     */
+    private String getString(ArrayList<String> strings) throws IOException {
+        int id = getInt();
+        if (id < 0 || id >= strings.size())
+            throw corrupt("invalid string id " + id);
+        return strings.get(id);
+    }
+
+    private void putInt(int value) throws IOException {
+        if (buffer.remaining() < 4)
+            flush();
+        buffer.putInt(value);
+    }
+
+    private void putBytes(byte[] bytes) throws IOException {
+        for (int offset = 0; offset < bytes.length; ) {
+            if (!buffer.hasRemaining())
+                flush();
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void putString(String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        putBytes(bytes);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            out.write(buffer);
+        buffer.clear();
+    }
+
+    private int getInt() throws IOException {
+        if (buffer.remaining() < 4)
+            fill(4);
+        return buffer.getInt();
+    }
+
+    private void getBytes(byte[] bytes) throws IOException {
+        for (int offset = 0; offset < bytes.length; ) {
+            if (!buffer.hasRemaining())
+                fill(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.get(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private String getString() throws IOException {
+        int length = getInt();
+        if (length < 0 || length > MAX_STRING)
+            throw corrupt("invalid string length " + length);
+        byte[] bytes = new byte[length];
+        getBytes(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read from the channel until at least the given number of bytes are
+     * buffered
+     */
+    private void fill(int length) throws IOException {
+        buffer.compact();
+        while (buffer.position() < length)
+            if (in.read(buffer) < 0)
+                throw new EOFException("The snapshot is truncated.");
+        buffer.flip();
+    }
+}
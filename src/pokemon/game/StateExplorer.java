@@ -0,0 +1,261 @@
+package pokemon.game;
+
+import java.util.Random;
+
+/**
+ * This class is responsible for enumerating the states the player can reach,
+ * step by step from the starting point. A state is the location of the player
+ * with the stations visited and the Pokemons caught, which also give the
+ * number of Poke balls. The states are explored in the order of their steps,
+ * and a state already stored in the transposition table with a score at least
+ * as good is skipped instead of being expanded again. A table much smaller
+ * than the states reachable in a few steps evicts states which are reached
+ * again later, the result is still correct but they are expanded again
+ */
+public class StateExplorer {
+
+    /**
+     * This interface is responsible for receiving the states explored
+     */
+    public interface Visitor {
+
+        /**
+         * Called for each state expanded and each state reaching the
+         * destination
+         *
+         * @param pos     The location of the player
+         * @param visited The entities visited, bit i - 2 for the point of
+         *                interest i of the distance table
+         * @param balls   The Poke balls owned
+         * @param steps   The steps so far
+         * @param score   The score of the player
+         */
+        void visit(Cell pos, long visited, int balls, int steps, int score);
+    }
+
+    private final Map map;
+    private final TranspositionTable table;
+    private final int rows, cols;
+    private final Random random;
+    private long expanded = 0, skipped = 0;
+
+    /**
+     * Constructor
+     *
+     * @param map   The game map, which is not modified
+     * @param table The table storing the best score of the states
+     */
+    public StateExplorer(Map map, TranspositionTable table) {
+        this(map, table, 0);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param map   The game map, which is not modified
+     * @param table The table storing the best score of the states
+     * @param seed  The seed of the keys of the states
+     */
+    public StateExplorer(Map map, TranspositionTable table, long seed) {
+        this.map = map;
+        this.table = table;
+        Cell dimension = map.getDimension();
+        this.rows = dimension.getM();
+        this.cols = dimension.getN();
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Explore the states reachable within the steps
+     *
+     * @param maxSteps The maximum number of steps
+     * @return The best score reaching the destination, MISSING if the
+     * destination cannot be reached
+     * @throws IllegalStateException If there are more than
+     *                               PathFinder.MAX_ENTITIES Pokemons and
+     *                               stations
+     */
+    public int explore(int maxSteps) {
+        return explore(maxSteps, null);
+    }
+
+    /**
+     * Explore the states reachable within the steps
+     *
+     * @param maxSteps The maximum number of steps
+     * @param visitor  The visitor receiving the states, or null
+     * @return The best score reaching the destination,
+     * TranspositionTable.MISSING if the destination cannot be reached
+     * @throws IllegalStateException If there are more than
+     *                               PathFinder.MAX_ENTITIES Pokemons and
+     *                               stations
+     */
+    public int explore(int maxSteps, Visitor visitor) {
+        DistanceTable points = map.getDistanceTable();
+        if (points == null)
+            return TranspositionTable.MISSING;
+        int numOfEntities = points.size() - 2;
+        if (numOfEntities > PathFinder.MAX_ENTITIES)
+            throw new IllegalStateException("at most " + PathFinder.MAX_ENTITIES + " Pokemons and stations are supported");
+
+        //the data of the entities, and the random keys of the cells and entities
+        PlayerState.Tables entities = new PlayerState.Tables(map, points);
+        long[] entityKeys = new long[numOfEntities];
+        for (int e = 0; e < numOfEntities; e++)
+            entityKeys[e] = random.nextLong();
+        long[] cellKeys = new long[rows * cols];
+        for (int i = 0; i < cellKeys.length; i++)
+            cellKeys[i] = random.nextLong();
+
+        byte[] grid = map.getGrid();
+        Cell dest = points.getPoint(DistanceTable.DEST);
+        int destination = dest.getM() * cols + dest.getN();
+        int best = TranspositionTable.MISSING;
+
+        Queue queue = new Queue();
+        Cell start = points.getPoint(DistanceTable.START);
+        queue.add(start.getM() * cols + start.getN(), 0, 0, 0, 0, 0, 0, 0);
+        while (!queue.isEmpty()) {
+            int slot = queue.poll();
+            int cell = queue.cells[slot], steps = queue.steps[slot], balls = queue.balls[slot];
+            int caught = queue.caught[slot], maxPower = queue.maxPower[slot];
+            long visited = queue.visited[slot], species = queue.species[slot], hash = queue.hash[slot];
+            int score = balls + 5 * caught + 10 * Long.bitCount(species) + maxPower - steps;
+
+            //the destination ends the game
+            if (cell == destination) {
+                best = Math.max(best, score);
+                if (visitor != null)
+                    visitor.visit(new Cell(cell / cols, cell % cols), visited, balls, steps, score);
+                continue;
+            }
+
+            //skip the state if it has been reached with a score at least as good
+            long key = hash ^ cellKeys[cell];
+            int known = table.get(key);
+            if (known != TranspositionTable.MISSING && known >= score) {
+                skipped++;
+                continue;
+            }
+            table.put(key, score);
+            expanded++;
+            if (visitor != null)
+                visitor.visit(new Cell(cell / cols, cell % cols), visited, balls, steps, score);
+            if (steps >= maxSteps)
+                continue;
+
+            int m = cell / cols, n = cell % cols;
+            int[] next = {m > 0 ? cell - cols : -1, m < rows - 1 ? cell + cols : -1, n > 0 ? cell - 1 : -1, n < cols - 1 ? cell + 1 : -1};
+            for (int c : next) {
+                if (c < 0 || grid[c] == Map.WALL)
+                    continue;
+                int i = entities.entityAt(c), e = i - 2;
+                long bit = i < 0 ? 0 : 1L << e;
+                if (i < 0 || (visited & bit) != 0) {
+                    queue.add(c, steps + 1, balls, caught, maxPower, visited, species, hash);
+                    continue;
+                }
+
+                //moving onto a station or a Pokemon which can be caught visits it
+                if (entities.getSpeciesBit(i) == 0)
+                    queue.add(c, steps + 1, balls + entities.getBallsProvided(i), caught, maxPower,
+                            visited | bit, species, hash ^ entityKeys[e]);
+                else if (balls >= entities.getBallsRequired(i))
+                    queue.add(c, steps + 1, balls - entities.getBallsRequired(i), caught + 1, Math.max(maxPower, entities.getPower(i)),
+                            visited | bit, species | entities.getSpeciesBit(i), hash ^ entityKeys[e]);
+                else
+                    queue.add(c, steps + 1, balls, caught, maxPower, visited, species, hash);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Get the number of states expanded by the explorations so far
+     *
+     * @return The number of states expanded
+     */
+    public long getExpanded() {
+        return expanded;
+    }
+
+    /**
+     * Get the number of states skipped because they had been reached with a
+     * score at least as good
+     *
+     * @return The number of states skipped
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Get the transposition table of the explorer
+     *
+     * @return The transposition table
+     */
+    public TranspositionTable getTable() {
+        return table;
+    }
+
+    /**
+     * A growable first-in first-out queue of states stored in primitive arrays
+     */
+    private static final class Queue {
+        int[] cells = new int[1024], steps = new int[1024], balls = new int[1024], caught = new int[1024], maxPower = new int[1024];
+        long[] visited = new long[1024], species = new long[1024], hash = new long[1024];
+        int head = 0, tail = 0;
+
+        boolean isEmpty() {
+            return head == tail;
+        }
+
+        /**
+         * Remove the first state
+         *
+         * @return The slot of the state, valid until the next add
+         */
+        int poll() {
+            return head++;
+        }
+
+        void add(int cell, int step, int ball, int numOfCaught, int power, long visit, long kinds, long key) {
+            if (tail == cells.length) {
+                //move the states left to the front, grow the arrays if they are more than half full
+                int length = tail - head;
+                int capacity = length * 2 > cells.length ? cells.length * 2 : cells.length;
+                cells = move(cells, capacity, length);
+                steps = move(steps, capacity, length);
+                balls = move(balls, capacity, length);
+                caught = move(caught, capacity, length);
+                maxPower = move(maxPower, capacity, length);
+                visited = move(visited, capacity, length);
+                species = move(species, capacity, length);
+                hash = move(hash, capacity, length);
+                head = 0;
+                tail = length;
+            }
+            cells[tail] = cell;
+            steps[tail] = step;
+            balls[tail] = ball;
+            caught[tail] = numOfCaught;
+            maxPower[tail] = power;
+            visited[tail] = visit;
+            species[tail] = kinds;
+            hash[tail] = key;
+            tail++;
+        }
+
+        private int[] move(int[] array, int capacity, int length) {
+            int[] result = capacity == array.length ? array : new int[capacity];
+            System.arraycopy(array, head, result, 0, length);
+            return result;
+        }
+
+        private long[] move(long[] array, int capacity, int length) {
+            long[] result = capacity == array.length ? array : new long[capacity];
+            System.arraycopy(array, head, result, 0, length);
+            return result;
+        }
+    }
+}
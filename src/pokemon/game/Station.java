@@ -19,6 +19,18 @@ public class Station extends Cell {
 		this.ballsProvided = Integer.parseInt(data[1]);
 	}
 
+	/**
+	 * Constructor
+	 *
+	 * @param m The row of the supply station
+	 * @param n The column of the supply station
+	 * @param ballsProvided The Poke ball(s) provided
+	 */
+	public Station(int m, int n, int ballsProvided) {
+		super(m, n);
+		this.ballsProvided = ballsProvided;
+	}
+
 	/**
 	 * Get the Poke ball(s) provided by the supply station
 	 * 
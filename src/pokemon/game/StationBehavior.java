@@ -0,0 +1,53 @@
+package pokemon.game;
+
+/**
+ * This class is responsible for the behavior of a supply station on the map,
+ * which respawns 5 to 10 seconds after the player visited it
+ */
+class StationBehavior extends Behavior {
+
+    private final Station station;
+
+    /**
+     * Constructor
+     *
+     * @param stn The supply station driven by this behavior
+     */
+    StationBehavior(Station stn) {
+        this.station = stn;
+    }
+
+    @Override
+    Cell entity() {
+        return station;
+    }
+
+    /**
+     * Remove the supply station after the player obtained the Poke balls
+     */
+    @Override
+    void playerEntered(WorldTicker ticker, long now) {
+        Game game = ticker.getGame();
+        System.out.println("Obtain Pokeballs!");
+
+        ticker.getListener().entityRemoved(station);
+        game.map.removeEntity(station);
+        hidden = true;
+        ticker.getListener().stationVisited(station);
+        ticker.schedule(this, now + 5000 + ticker.getRandom().nextInt(5000));
+    }
+
+    /**
+     * Respawn the hidden supply station, if there is no empty path try again
+     * one second later
+     */
+    @Override
+    void timerExpired(WorldTicker ticker, long now) {
+        Game game = ticker.getGame();
+        if (game.map.placeEntity(station, Map.SUPP, ticker.getRandom(), game.player.currentPos())) {
+            ticker.getListener().entityPlaced(station);
+            hidden = false;
+        } else
+            ticker.schedule(this, now + 1000);
+    }
+}
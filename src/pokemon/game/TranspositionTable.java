@@ -0,0 +1,177 @@
+package pokemon.game;
+
+import java.util.Arrays;
+
+/**
+ * This class is responsible for remembering the best score known for each
+ * search state. The states are identified by 64-bit keys and stored in
+ * primitive arrays of a fixed capacity, grouped into buckets of WAYS slots.
+ * When a bucket is full, the least recently used slot is evicted. It is not
+ * thread-safe
+ */
+public class TranspositionTable {
+
+    /**
+     * The value returned for a state which is not in the table
+     */
+    public static final int MISSING = Integer.MIN_VALUE;
+
+    private static final int WAYS = 4;
+
+    private final long[] keys;
+    private final int[] values;
+
+    // the time each slot was last used, 0 if the slot is empty
+    private final long[] stamps;
+    private final int bucketMask;
+    private long clock = 0;
+    private int size = 0;
+    private long hits = 0, misses = 0, evictions = 0;
+
+    /**
+     * Constructor
+     *
+     * @param capacity The maximum number of states, rounded up to a power of
+     *                 two
+     */
+    public TranspositionTable(int capacity) {
+        int slots = Math.max(WAYS, Integer.highestOneBit(Math.max(1, capacity - 1)) << 1);
+        keys = new long[slots];
+        values = new int[slots];
+        stamps = new long[slots];
+        bucketMask = slots / WAYS - 1;
+    }
+
+    /**
+     * Get the best score stored for the state
+     *
+     * @param key The key of the state
+     * @return The score, MISSING if the state is not in the table
+     */
+    public int get(long key) {
+        int base = bucket(key);
+        for (int i = base; i < base + WAYS; i++)
+            if (stamps[i] != 0 && keys[i] == key) {
+                stamps[i] = ++clock;
+                hits++;
+                return values[i];
+            }
+        misses++;
+        return MISSING;
+    }
+
+    /**
+     * Store the score of the state, replacing the score stored before. The
+     * least recently used state of the bucket is evicted if it is full
+     *
+     * @param key   The key of the state
+     * @param value The score
+     */
+    public void put(long key, int value) {
+        int base = bucket(key), slot = base;
+        for (int i = base; i < base + WAYS; i++) {
+            if (stamps[i] != 0 && keys[i] == key) {
+                slot = i;
+                break;
+            }
+            if (stamps[i] < stamps[slot])
+                slot = i;
+        }
+        if (stamps[slot] == 0)
+            size++;
+        else if (keys[slot] != key)
+            evictions++;
+        keys[slot] = key;
+        values[slot] = value;
+        stamps[slot] = ++clock;
+    }
+
+    /**
+     * Remove all the states and reset the statistics
+     */
+    public void clear() {
+        Arrays.fill(stamps, 0);
+        clock = 0;
+        size = 0;
+        hits = misses = evictions = 0;
+    }
+
+    /**
+     * Get the number of states stored
+     *
+     * @return The number of states
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the maximum number of states
+     *
+     * @return The capacity
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Get the number of lookups which found the state
+     *
+     * @return The number of hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of lookups which did not find the state
+     *
+     * @return The number of misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get the number of states evicted to make room for others
+     *
+     * @return The number of evictions
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Get the ratio of the lookups which found the state
+     *
+     * @return The hit rate, 0 if there is no lookup
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Get the memory used by the arrays of the table
+     *
+     * @return The number of bytes
+     */
+    public long getMemoryBytes() {
+        return (long) keys.length * (Long.BYTES + Integer.BYTES + Long.BYTES);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d states, hit rate %.1f%%, %d evictions, %d KB", size, capacity(),
+                getHitRate() * 100, evictions, getMemoryBytes() >> 10);
+    }
+
+    /**
+     * Get the first slot of the bucket of the key, the bits of the key are
+     * mixed so that nearby keys fall into different buckets
+     */
+    private int bucket(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) ((h ^ (h >>> 32)) & bucketMask) * WAYS;
+    }
+}
@@ -0,0 +1,38 @@
+package pokemon.game;
+
+/**
+ * This interface is responsible for receiving the events raised while the
+ * world is being simulated, e.g. by the user interface
+ */
+public interface WorldListener {
+
+    /**
+     * Called before an entity is taken off the map, the entity still holds
+     * its old location
+     *
+     * @param entity The Pokemon or supply station being removed
+     */
+    void entityRemoved(Cell entity);
+
+    /**
+     * Called after an entity is put onto the map at its current location
+     *
+     * @param entity The Pokemon or supply station being placed
+     */
+    void entityPlaced(Cell entity);
+
+    /**
+     * Called when the player steps onto a Pokemon
+     *
+     * @param pkm    The Pokemon encountered
+     * @param caught Whether the Pokemon is caught
+     */
+    void pokemonEncountered(Pokemon pkm, boolean caught);
+
+    /**
+     * Called when the player steps onto a supply station
+     *
+     * @param stn The supply station visited
+     */
+    void stationVisited(Station stn);
+}
@@ -0,0 +1,244 @@
+package pokemon.game;
+
+import java.util.IdentityHashMap;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is responsible for simulating the world, all the Pokemons and
+ * supply stations are advanced by one fixed-rate loop running on a single
+ * thread instead of one thread per entity. The loop follows the game clock,
+ * it is stopped while the game is paused
+ */
+public class WorldTicker {
+
+    /**
+     * The period of the loop in milliseconds
+     */
+    public static final long TICK_MILLIS = 10;
+
+    private final Game game;
+    private final CopyOnWriteArrayList<WorldListener> listeners = new CopyOnWriteArrayList<>();
+    private final WorldListener dispatcher = new Dispatcher();
+    private final Random random = new Random();
+    private final IdentityHashMap<Cell, Behavior> behaviors = new IdentityHashMap<>();
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>();
+    private final ScheduledExecutorService executor;
+    private ScheduledFuture<?> loop;
+    private boolean started = false;
+    private int lastCaught = 0;
+
+    /**
+     * A timer scheduled by a behavior, ordered by its deadline
+     */
+    static final class Timer implements Comparable<Timer> {
+        final long deadline;
+        final Behavior owner;
+
+        Timer(long deadline, Behavior owner) {
+            this.deadline = deadline;
+            this.owner = owner;
+        }
+
+        @Override
+        public int compareTo(Timer t) {
+            return Long.compare(deadline, t.deadline);
+        }
+    }
+
+    /**
+     * Constructor, create the behaviors of all the Pokemons and supply
+     * stations existing on the map. The ones which are hidden and not caught,
+     * e.g. restored from a snapshot, respawn after the usual delay
+     *
+     * @param game     The game object
+     * @param listener The listener receiving the world events
+     */
+    public WorldTicker(Game game, WorldListener listener) {
+        this.game = game;
+        listeners.add(listener);
+        lastCaught = game.player.getNumOfPokemons();
+        long now = game.clock.now();
+        for (Pokemon pkm : game.map.getExistingPokemons()) {
+            PokemonBehavior behavior = new PokemonBehavior(pkm);
+            behaviors.put(pkm, behavior);
+            schedule(behavior, now + 1000 + random.nextInt(1000));
+        }
+        for (Station stn : game.map.getExistingStations())
+            behaviors.put(stn, new StationBehavior(stn));
+
+        IdentityHashMap<Pokemon, Boolean> caught = new IdentityHashMap<>();
+        for (Pokemon pkm : game.player.getPokemons())
+            caught.put(pkm, true);
+        for (Pokemon pkm : game.map.getHiddenPokemons())
+            if (!caught.containsKey(pkm)) {
+                PokemonBehavior behavior = new PokemonBehavior(pkm);
+                behavior.hidden = true;
+                behaviors.put(pkm, behavior);
+                schedule(behavior, now + 3000 + random.nextInt(2000));
+            }
+        for (Station stn : game.map.getHiddenStations()) {
+            StationBehavior behavior = new StationBehavior(stn);
+            behavior.hidden = true;
+            behaviors.put(stn, behavior);
+            schedule(behavior, now + 5000 + random.nextInt(5000));
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "World Ticker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Add another listener receiving the world events, e.g. a Replanner
+     *
+     * @param listener The listener
+     */
+    public void addListener(WorldListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Start the loop
+     */
+    public synchronized void start() {
+        System.out.println("World Ticker Start! (" + behaviors.size() + " entities)");
+        started = true;
+        game.clock.addListener(this::clockChanged);
+        clockChanged();
+    }
+
+    /**
+     * Stop the loop
+     */
+    public synchronized void stop() {
+        started = false;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Stop the loop while the game is paused, and restart it when the game is
+     * resumed
+     */
+    private synchronized void clockChanged() {
+        if (!started)
+            return;
+        if (game.clock.isPaused()) {
+            if (loop != null)
+                loop.cancel(false);
+            loop = null;
+        } else if (loop == null)
+            loop = executor.scheduleAtFixedRate(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Advance the world to the current game time
+     */
+    private void tick() {
+        try {
+            if (game.clock.isPaused())
+                return;
+            long time = game.clock.now();
+
+            //if the player and an entity are at the same location, trigger the pickup event
+            Cell pos = game.player.currentPos();
+            if (pos != null && (game.map.isPokemon(pos) || game.map.isSupplyStation(pos))) {
+                Cell entity = game.map.isPokemon(pos) ? game.map.getPokemon(pos) : game.map.getStation(pos);
+                Behavior behavior = behaviors.get(entity);
+                if (behavior != null && !behavior.hidden)
+                    behavior.playerEntered(this, time);
+            }
+
+            //fire all the timers due
+            while (!timers.isEmpty() && timers.peek().deadline <= time) {
+                Timer timer = timers.poll();
+                if (timer.owner.timer == timer) {
+                    timer.owner.timer = null;
+                    timer.owner.timerExpired(this, time);
+                }
+            }
+            lastCaught = game.player.getNumOfPokemons();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Schedule the timer of the behavior, replacing the pending one
+     *
+     * @param behavior The behavior
+     * @param deadline The game time when the timer expires
+     */
+    void schedule(Behavior behavior, long deadline) {
+        behavior.timer = new Timer(deadline, behavior);
+        timers.add(behavior.timer);
+    }
+
+    /**
+     * Cancel the pending timer of the behavior
+     *
+     * @param behavior The behavior
+     */
+    void cancel(Behavior behavior) {
+        behavior.timer = null;
+    }
+
+    /**
+     * Check if the player caught a Pokemon since the last tick, i.e. the
+     * Pokemon was caught when the player moved onto it
+     *
+     * @return Whether a Pokemon was caught since the last tick
+     */
+    boolean caughtSinceLastTick() {
+        return game.player.getNumOfPokemons() > lastCaught;
+    }
+
+    Game getGame() {
+        return game;
+    }
+
+    WorldListener getListener() {
+        return dispatcher;
+    }
+
+    Random getRandom() {
+        return random;
+    }
+
+    /**
+     * The listener passing the world events to all the listeners added
+     */
+    private final class Dispatcher implements WorldListener {
+
+        @Override
+        public void entityRemoved(Cell entity) {
+            for (WorldListener listener : listeners)
+                listener.entityRemoved(entity);
+        }
+
+        @Override
+        public void entityPlaced(Cell entity) {
+            for (WorldListener listener : listeners)
+                listener.entityPlaced(entity);
+        }
+
+        @Override
+        public void pokemonEncountered(Pokemon pkm, boolean caught) {
+            for (WorldListener listener : listeners)
+                listener.pokemonEncountered(pkm, caught);
+        }
+
+        @Override
+        public void stationVisited(Station stn) {
+            for (WorldListener listener : listeners)
+                listener.stationVisited(stn);
+        }
+    }
+}
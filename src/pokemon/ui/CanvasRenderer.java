@@ -0,0 +1,135 @@
+package pokemon.ui;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.paint.Color;
+import pokemon.game.Cell;
+import pokemon.game.Game;
+import pokemon.game.Map;
+import pokemon.game.Pokemon;
+
+/**
+ * This class is responsible for drawing the map onto a canvas of the size of
+ * the viewport instead of one node per cell. Every frame only the cells in
+ * the viewport are drawn, from the map as it is, so the cost of a frame does
+ * not depend on the size of the map. The camera follows the avatar and is
+ * kept inside the map
+ */
+public class CanvasRenderer extends AnimationTimer {
+
+    /**
+     * The maximum number of cells shown in each direction
+     */
+    public static final int VIEWPORT_CELLS = 15;
+
+    // how fast the camera catches up with the avatar, per second
+    private static final double CAMERA_SPEED = 10;
+
+    private final Game game;
+    private final int stepSize;
+    private final Canvas canvas;
+    private final ImageView avatar;
+    private final SpriteCache sprites;
+    private final Image treeImg, exitImg, ballImg;
+    private final int rows, cols;
+    private double cameraX, cameraY;
+    private long lastFrame = -1;
+
+    /**
+     * Constructor
+     *
+     * @param game     The game object
+     * @param stepSize The size of a cell in pixels
+     * @param avatar   The avatar, whose image is drawn at the player location
+     * @param sprites  The icons of the Pokemons
+     * @param treeImg  The image of the walls
+     * @param exitImg  The image of the destination
+     * @param ballImg  The image of the supply stations
+     */
+    public CanvasRenderer(Game game, int stepSize, ImageView avatar, SpriteCache sprites, Image treeImg, Image exitImg, Image ballImg) {
+        this.game = game;
+        this.stepSize = stepSize;
+        this.avatar = avatar;
+        this.sprites = sprites;
+        this.treeImg = treeImg;
+        this.exitImg = exitImg;
+        this.ballImg = ballImg;
+        Cell dimension = game.map.getDimension();
+        rows = dimension.getM();
+        cols = dimension.getN();
+        canvas = new Canvas(Math.min(cols, VIEWPORT_CELLS) * stepSize, Math.min(rows, VIEWPORT_CELLS) * stepSize);
+    }
+
+    /**
+     * Get the canvas which the map is drawn onto
+     *
+     * @return The canvas
+     */
+    public Canvas getCanvas() {
+        return canvas;
+    }
+
+    /**
+     * Move the camera towards the avatar and draw the viewport
+     *
+     * @param now The time of the frame in nanoseconds
+     */
+    @Override
+    public void handle(long now) {
+        double width = canvas.getWidth(), height = canvas.getHeight();
+        Cell pos = game.player.currentPos();
+        if (pos != null) {
+            //center the avatar, but do not show anything outside the map
+            double targetX = clamp((pos.getN() + 0.5) * stepSize - width / 2, cols * stepSize - width);
+            double targetY = clamp((pos.getM() + 0.5) * stepSize - height / 2, rows * stepSize - height);
+            double t = lastFrame < 0 ? 1 : Math.min(1, (now - lastFrame) / 1e9 * CAMERA_SPEED);
+            cameraX += (targetX - cameraX) * t;
+            cameraY += (targetY - cameraY) * t;
+        }
+        lastFrame = now;
+
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.setFill(Color.WHITE);
+        gc.fillRect(0, 0, width, height);
+        Map map = game.map;
+        int firstRow = (int) (cameraY / stepSize), firstCol = (int) (cameraX / stepSize);
+        int lastRow = Math.min(rows - 1, (int) ((cameraY + height) / stepSize));
+        int lastCol = Math.min(cols - 1, (int) ((cameraX + width) / stepSize));
+        for (int i = firstRow; i <= lastRow; i++)
+            for (int j = firstCol; j <= lastCol; j++) {
+                Image img = imageOf(map, i, j);
+                if (img != null)
+                    gc.drawImage(img, j * stepSize - cameraX, i * stepSize - cameraY, stepSize, stepSize);
+            }
+        if (pos != null)
+            gc.drawImage(avatar.getImage(), pos.getN() * stepSize - cameraX, pos.getM() * stepSize - cameraY, stepSize, stepSize);
+    }
+
+    /**
+     * Get the image of the cell
+     *
+     * @return The image, null for an empty path
+     */
+    private Image imageOf(Map map, int i, int j) {
+        switch (map.getType(i, j)) {
+            case Map.WALL:
+                return treeImg;
+            case Map.DEST:
+                return exitImg;
+            case Map.SUPP:
+                return ballImg;
+            case Map.POKE:
+                Pokemon pokemon = map.getPokemon(new Cell(i, j));
+                return pokemon == null ? null : sprites.get(PokemonList.getIdOfFromName(pokemon.getPokemonName()));
+            default:
+                return null;
+        }
+    }
+
+    private static double clamp(double value, double max) {
+        return Math.max(0, Math.min(value, Math.max(0, max)));
+    }
+}
@@ -0,0 +1,65 @@
+package pokemon.ui;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * This class is responsible for creating the threads of the pokemons and
+ * stations, either platform threads or virtual threads. Virtual threads only
+ * exist from Java 21 on, so they are looked up through reflection and the
+ * game still compiles and runs on Java 8, falling back to platform threads
+ */
+public final class EntityThreads {
+
+    //the factory of virtual threads, null if the running JDK has none
+    private static final ThreadFactory VIRTUAL = lookupVirtualFactory();
+
+    private EntityThreads() {
+    }
+
+    /**
+     * Check if the running JDK supports virtual threads
+     *
+     * @return Whether virtual threads are supported
+     */
+    public static boolean isVirtualSupported() {
+        return VIRTUAL != null;
+    }
+
+    /**
+     * Get the factory of the threads of the pokemons and stations. If virtual
+     * threads are requested but not supported, a message is printed and
+     * platform threads are used instead
+     *
+     * @param virtual Whether to create virtual threads instead of platform threads
+     * @return The thread factory
+     */
+    public static ThreadFactory factory(boolean virtual) {
+        if (virtual) {
+            if (VIRTUAL != null)
+                return VIRTUAL;
+            System.out.println("Virtual threads need Java 21 or later (running " + System.getProperty("java.version")
+                    + "), using platform threads instead");
+        }
+        return r -> {
+            Thread t = new Thread(r);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Look up Thread.ofVirtual().factory() through reflection
+     *
+     * @return The factory of virtual threads, null if there is none
+     */
+    private static ThreadFactory lookupVirtualFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
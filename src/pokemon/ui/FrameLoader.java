@@ -0,0 +1,106 @@
+package pokemon.ui;
+
+import javafx.scene.image.Image;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * This class is responsible for the frames of an animation, which are decoded
+ * on demand by a background loader instead of all at once. When a frame is
+ * taken, the frames in the look-ahead window after it are decoded in the
+ * background and the frames before it are dropped, so that only a window of
+ * frames is kept in memory
+ */
+public class FrameLoader {
+
+    private final String directory;
+    private final int numOfFrames, window;
+    private final ExecutorService loader;
+
+    //the frames decoded or being decoded, by their index
+    private final HashMap<Integer, Future<Image>> frames = new HashMap<>();
+
+    /**
+     * Constructor, no frame is decoded until it is prefetched or taken
+     *
+     * @param directory   The directory of the frames, named
+     *                    frame_i_delay-0.05s.gif
+     * @param numOfFrames The number of frames
+     * @param window      The number of frames decoded ahead
+     * @param loader      The executor decoding the frames
+     */
+    public FrameLoader(String directory, int numOfFrames, int window, ExecutorService loader) {
+        this.directory = directory;
+        this.numOfFrames = numOfFrames;
+        this.window = window;
+        this.loader = loader;
+    }
+
+    /**
+     * Get the number of frames
+     *
+     * @return The number of frames
+     */
+    public int size() {
+        return numOfFrames;
+    }
+
+    /**
+     * Decode the first frames in the background, e.g. once the window is
+     * shown, so that the animation can start at once
+     */
+    public synchronized void prefetch() {
+        prefetch(0);
+    }
+
+    /**
+     * Take the frame, waiting until it is decoded. The frames before it are
+     * dropped and the frames in the window after it are decoded in the
+     * background
+     *
+     * @param i The index of the frame
+     * @return The frame, null if it cannot be decoded
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public Image get(int i) throws InterruptedException {
+        Future<Image> frame;
+        synchronized (this) {
+            frames.keySet().removeIf(k -> k < i);
+            prefetch(i);
+            frame = frames.get(i);
+        }
+        try {
+            return frame.get();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Drop all the frames after the animation ends, the first frames are
+     * decoded again for the next time
+     */
+    public synchronized void release() {
+        for (Future<Image> frame : frames.values())
+            frame.cancel(false);
+        frames.clear();
+        prefetch(0);
+    }
+
+    /**
+     * Decode the frames of the window starting from the index which are not
+     * decoded yet
+     */
+    private void prefetch(int from) {
+        for (int i = from; i < Math.min(numOfFrames, from + window); i++)
+            if (!frames.containsKey(i)) {
+                String url = new File(directory, "frame_" + i + "_delay-0.05s.gif").toURI().toString();
+                frames.put(i, loader.submit(() -> new Image(url)));
+            }
+    }
+}
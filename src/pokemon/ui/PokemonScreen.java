@@ -2,6 +2,7 @@ package pokemon.ui;
 
 import javafx.application.Application;
 import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
 import javafx.geometry.Insets;
 import javafx.scene.Node;
 import javafx.scene.Scene;
@@ -11,25 +12,32 @@ import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.*;
-import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import pokemon.game.*;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import static javafx.scene.input.KeyCode.*;
 
-public class PokemonScreen extends Application {
+public class PokemonScreen extends Application implements WorldListener {
 
     private Game game;
+    private WorldTicker ticker;
+    private CanvasRenderer renderer;
+    private ViewUpdater viewUpdater;
+    private ScoreModel scoreModel;
 
     private enum View {TREE, EXIT, BALL, PATH, POKE}
 
     public enum Msg {NONE, UNCAUGHT, CAUGHT, ENDGAME}
 
     private static final int STEP_SIZE = 40;
+    private static final long SPRITE_CACHE_BYTES = 8 << 20;
+    private static final int FRAME_WINDOW = 16;
     private final BorderPane mainPane;
     private final GridPane mapPane;
     private final VBox scorePane;
@@ -56,13 +64,13 @@ public class PokemonScreen extends Application {
     private static Image treeImg;
     private static Image exitImg;
     private static Image ballImg;
-    private static ArrayList<Image> catchSuccessfulFrames, catchFailedFrames;
+    private static FrameLoader catchSuccessfulFrames, catchFailedFrames;
 
     private boolean avatarPause = false;
-    private boolean gamePause = false;
     private KeyCode lastKeyPressed = null;
     private final HashMap<Pokemon, Node> pokemonViews;
     private final HashMap<Station, Node> stationViews;
+    private final SpriteCache sprites = new SpriteCache(STEP_SIZE, SPRITE_CACHE_BYTES);
 
     {
         avatar = new ImageView(new Image(avatarFront));
@@ -70,14 +78,16 @@ public class PokemonScreen extends Application {
         avatar.setFitHeight(STEP_SIZE);
         avatar.setPreserveRatio(true);
 
-        catchSuccessfulFrames = new ArrayList<>();
-        for (int i = 0; i <= 233; i++)
-            catchSuccessfulFrames.add(new Image(new File("icons/catch_successful/frame_" + i + "_delay-0.05s.gif").toURI().toString()));
-        catchFailedFrames = new ArrayList<>();
-        for (int i = 0; i <= 203; i++)
-            catchFailedFrames.add(new Image(new File("icons/catch_fail/frame_" + i + "_delay-0.05s.gif").toURI().toString()));
+        //the frames of the catch animations are decoded by a background loader when they are needed
+        ExecutorService frameLoader = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Frame Loader");
+            t.setDaemon(true);
+            return t;
+        });
+        catchSuccessfulFrames = new FrameLoader("icons/catch_successful", 234, FRAME_WINDOW, frameLoader);
+        catchFailedFrames = new FrameLoader("icons/catch_fail", 204, FRAME_WINDOW, frameLoader);
 
-        catchAnimationImageView = new ImageView(catchSuccessfulFrames.get(0));
+        catchAnimationImageView = new ImageView();
         catchAnimationWindow = new Stage();
         catchAnimationWindow.setScene(new Scene(new BorderPane(catchAnimationImageView)));
         catchAnimationWindow.setResizable(false);
@@ -97,18 +107,12 @@ public class PokemonScreen extends Application {
         resumeBtn = new Button("Resume");
         resumeBtn.setFocusTraversable(false);
         resumeBtn.setOnAction(e -> {
-            if (gamePause) {
-                gamePause = false;
-                PokemonRunnable.gamePause = StationRunnable.gamePause = false;
-            }
+            setWorldPaused(false);
         });
         pauseBtn = new Button("Pause");
         pauseBtn.setFocusTraversable(false);
         pauseBtn.setOnAction(e -> {
-            if (!gamePause) {
-                gamePause = true;
-                PokemonRunnable.gamePause = StationRunnable.gamePause = true;
-            }
+            setWorldPaused(true);
         });
 
         scorePane = new VBox();
@@ -122,6 +126,9 @@ public class PokemonScreen extends Application {
         File file = new File("sampleIn.txt");
         try {
             game.initialize(file);
+        } catch (MapFormatException e) {
+            System.out.println("The input file is written in invalid format. (" + e.getMessage() + ")");
+            System.exit(-1);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -135,12 +142,22 @@ public class PokemonScreen extends Application {
         exitImg = new Image(exitPath);
         ballImg = new Image(ballPath);
 
+        //the views of the pokemons and stations are only created when the map pane is shown
+        Map map = game.map;
+        map.setMap(map.getStart(), Map.PATH);
+        game.player.move(map.getStart(), map);
+    }
+
+    /**
+     * Add one view per cell, the pokemons, the stations and the avatar to the
+     * map pane, it is only used when the map is not drawn onto a canvas
+     */
+    private void buildMapPane() {
         Map map = game.map;
         Cell dimension = map.getDimension();
-        char[][] mapArr = map.getMap();
         for (int i = 0; i < dimension.getM(); i++)
             for (int j = 0; j < dimension.getN(); j++) {
-                switch (mapArr[i][j]) {
+                switch (map.getType(i, j)) {
                     case Map.PATH:
                         mapPane.add(viewFactory(View.PATH), j, i);
                         break;
@@ -148,26 +165,24 @@ public class PokemonScreen extends Application {
                         mapPane.add(viewFactory(View.EXIT), j, i);
                         break;
                     case Map.SUPP:
+                        Node station = viewFactory(View.BALL);
+                        stationViews.put(map.getStation(new Cell(i, j)), station);
                         mapPane.add(viewFactory(View.PATH), j, i);
-                        stationViews.put(map.getStation(new Cell(i, j)), viewFactory(View.BALL));
-                        mapPane.add(stationViews.get(map.getStation(new Cell(i, j))), j, i);
+                        mapPane.add(station, j, i);
                         break;
                     case Map.WALL:
                         mapPane.add(viewFactory(View.TREE), j, i);
                         break;
                     case Map.POKE:
+                        Node pokemon = viewFactory(View.POKE, new Cell(i, j));
+                        pokemonViews.put(map.getPokemon(new Cell(i, j)), pokemon);
                         mapPane.add(viewFactory(View.PATH), j, i);
-                        pokemonViews.put(map.getPokemon(new Cell(i, j)), viewFactory(View.POKE, new Cell(i, j)));
-                        mapPane.add(pokemonViews.get(map.getPokemon(new Cell(i, j))), j, i);
-                        break;
-                    case Map.START:
-                        mapPane.add(viewFactory(View.PATH), j, i);
-                        mapPane.add(avatar, j, i);
-                        game.map.setMap(new Cell(i, j), Map.PATH);
+                        mapPane.add(pokemon, j, i);
                         break;
                 }
             }
-        game.player.move(map.getStart(), map);
+        Cell start = map.getStart();
+        mapPane.add(avatar, start.getN(), start.getM());
     }
 
     /**
@@ -178,58 +193,63 @@ public class PokemonScreen extends Application {
      */
     @Override
     public void start(Stage stage) throws Exception {
-        mainPane.setCenter(mapPane);
+        //by default the map is a grid of one view per cell, --renderer=canvas draws
+        //only the cells around the avatar onto a canvas instead
+        if ("canvas".equals(getParameters().getNamed().get("renderer"))) {
+            renderer = new CanvasRenderer(game, STEP_SIZE, avatar, sprites, treeImg, exitImg, ballImg);
+            mainPane.setCenter(renderer.getCanvas());
+            renderer.start();
+        } else {
+            buildMapPane();
+            mainPane.setCenter(mapPane);
+            viewUpdater = new ViewUpdater(mapPane, game.map, pokemonViews, stationViews);
+            viewUpdater.start();
+        }
         mainPane.setRight(scorePane);
+        scoreModel = new ScoreModel(game.player);
+        buildScorePane();
         updateScorePane(Msg.NONE);
+        scoreModel.start();
 
         Scene scene = new Scene(mainPane);
 
         //key press event
         scene.setOnKeyPressed(e -> {
-            if (!avatarPause && !gamePause) {
+            if (!avatarPause && !game.clock.isPaused()) {
                 Cell pos = game.player.currentPos();
                 Map map = game.map;
-                synchronized (mapPane) {
-                    switch (e.getCode()) {
-                        case UP:
-                            avatar.setImage(avatarBackImg);
-                            if (!map.isOutOfBound(pos.up()) && !map.isWall(pos.up())) {
-                                game.player.move(pos.up(), map);
-                                mapPane.getChildren().remove(avatar);
-                                mapPane.add(avatar, pos.up().getN(), pos.up().getM());
-                            }
-                            lastKeyPressed = UP;
-                            break;
-                        case DOWN:
-                            avatar.setImage(avatarFrontImg);
-                            if (!map.isOutOfBound(pos.down()) && !map.isWall(pos.down())) {
-                                game.player.move(pos.down(), map);
-                                mapPane.getChildren().remove(avatar);
-                                mapPane.add(avatar, pos.down().getN(), pos.down().getM());
-                            }
-                            lastKeyPressed = DOWN;
-                            break;
-                        case LEFT:
-                            avatar.setImage(avatarLeftImg);
-                            if (!map.isOutOfBound(pos.left()) && !map.isWall(pos.left())) {
-                                game.player.move(pos.left(), map);
-                                mapPane.getChildren().remove(avatar);
-                                mapPane.add(avatar, pos.left().getN(), pos.left().getM());
-                            }
-                            lastKeyPressed = LEFT;
-                            break;
-                        case RIGHT:
-                            avatar.setImage(avatarRightImg);
-                            if (!map.isOutOfBound(pos.right()) && !map.isWall(pos.right())) {
-                                game.player.move(pos.right(), map);
+                Cell next = null;
+                switch (e.getCode()) {
+                    case UP:
+                        avatar.setImage(avatarBackImg);
+                        next = pos.up();
+                        break;
+                    case DOWN:
+                        avatar.setImage(avatarFrontImg);
+                        next = pos.down();
+                        break;
+                    case LEFT:
+                        avatar.setImage(avatarLeftImg);
+                        next = pos.left();
+                        break;
+                    case RIGHT:
+                        avatar.setImage(avatarRightImg);
+                        next = pos.right();
+                        break;
+                }
+                if (next != null) {
+                    lastKeyPressed = e.getCode();
+                    if (!map.isOutOfBound(next) && !map.isWall(next)) {
+                        game.player.move(next, map);
+                        //the canvas draws the avatar where the player is every frame
+                        if (renderer == null)
+                            synchronized (mapPane) {
                                 mapPane.getChildren().remove(avatar);
-                                mapPane.add(avatar, pos.right().getN(), pos.right().getM());
+                                mapPane.add(avatar, next.getN(), next.getM());
                             }
-                            lastKeyPressed = RIGHT;
-                            break;
                     }
-                    if (e.getCode() == KeyCode.UP || e.getCode() == KeyCode.DOWN || e.getCode() == KeyCode.LEFT || e.getCode() == KeyCode.RIGHT)
-                        updateScorePane(Msg.NONE);
+                    updateScorePane(Msg.NONE);
+                    game.clock.signal(game.player.currentPos());
                 }
 
                 if (lastKeyPressed == UP || lastKeyPressed == DOWN || lastKeyPressed == LEFT || lastKeyPressed == RIGHT) {
@@ -238,8 +258,7 @@ public class PokemonScreen extends Application {
                         resumeBtn.setDisable(true);
                         pauseBtn.setDisable(true);
                         avatarPause = true;
-                        gamePause = true;
-                        PokemonRunnable.gamePause = StationRunnable.gamePause = true;
+                        setWorldPaused(true);
                     }
                     avatarPause = true;
                 }
@@ -256,20 +275,97 @@ public class PokemonScreen extends Application {
 
         stage.setScene(scene);
         stage.show();
-
-        //start all pokemon and station threads
-        for (java.util.Map.Entry<Pokemon, Node> entry : pokemonViews.entrySet()) {
-            Thread t = new Thread(new PokemonRunnable(entry.getKey(), mapPane, pokemonViews, game, this));
-            t.setDaemon(true);
-            t.start();
-        }
-        for (java.util.Map.Entry<Station, Node> entry : stationViews.entrySet()) {
-            Thread t = new Thread(new StationRunnable(entry.getKey(), mapPane, stationViews, game, this));
-            t.setDaemon(true);
-            t.start();
+        catchSuccessfulFrames.prefetch();
+        catchFailedFrames.prefetch();
+
+        //start the world, by default all pokemons and stations are driven by a single ticker,
+        //--engine=threads starts one platform thread per pokemon and station instead,
+        //--engine=virtual starts one virtual thread per pokemon and station instead (Java 21 or later)
+        String engine = getParameters().getNamed().get("engine");
+        if ("threads".equals(engine) || "virtual".equals(engine)) {
+            ThreadFactory threads = EntityThreads.factory("virtual".equals(engine));
+            for (Pokemon pkm : game.map.getExistingPokemons())
+                threads.newThread(new PokemonRunnable(pkm, game, this)).start();
+            for (Station stn : game.map.getExistingStations())
+                threads.newThread(new StationRunnable(stn, game, this)).start();
+        } else {
+            ticker = new WorldTicker(game, this);
+            ticker.start();
         }
     }
 
+    /**
+     * Pause or resume all the pokemons and stations, the game clock is the
+     * only pause state of the game
+     *
+     * @param pause Whether the world is paused
+     */
+    private void setWorldPaused(boolean pause) {
+        if (pause)
+            game.clock.pause();
+        else
+            game.clock.resume();
+    }
+
+    /**
+     * Mark the pokemon or station as changed, its view is moved or taken off
+     * the map pane in the next frame. It can be called from any thread
+     *
+     * @param entity The pokemon or station
+     */
+    public void entityChanged(Cell entity) {
+        //the canvas draws the map as it is every frame
+        if (viewUpdater != null)
+            viewUpdater.markDirty(entity);
+    }
+
+    /**
+     * Mark the pokemon or station as changed, the event comes before it is
+     * taken off the map, so it is marked again when the removal is reported
+     *
+     * @param entity The pokemon or station
+     */
+    @Override
+    public void entityRemoved(Cell entity) {
+        entityChanged(entity);
+    }
+
+    /**
+     * Mark the pokemon or station as changed
+     *
+     * @param entity The pokemon or station
+     */
+    @Override
+    public void entityPlaced(Cell entity) {
+        entityChanged(entity);
+    }
+
+    /**
+     * Show the catch animation and the result of the catch event
+     *
+     * @param pkm    The pokemon encountered
+     * @param caught Whether the pokemon is caught
+     */
+    @Override
+    public void pokemonEncountered(Pokemon pkm, boolean caught) {
+        entityChanged(pkm);
+        Platform.runLater(() -> {
+            showCatchAnimation(caught);
+        });
+        updateScorePane(caught ? Msg.CAUGHT : Msg.UNCAUGHT);
+    }
+
+    /**
+     * Update the score pane after the player obtained the Poke balls
+     *
+     * @param stn The station visited
+     */
+    @Override
+    public void stationVisited(Station stn) {
+        entityChanged(stn);
+        updateScorePane(Msg.NONE);
+    }
+
     /**
      * Generate the image views
      *
@@ -321,8 +417,7 @@ public class PokemonScreen extends Application {
             case POKE:
                 Pokemon pokemon = game.map.getPokemon(cell);
                 int id = PokemonList.getIdOfFromName(pokemon.getPokemonName());
-                Image img = new Image(new File("icons/" + id + ".png").toURI().toString());
-                ImageView pokemonImg = new ImageView(img);
+                ImageView pokemonImg = new ImageView(sprites.get(id));
                 pokemonImg.setFitHeight(STEP_SIZE);
                 pokemonImg.setFitWidth(STEP_SIZE);
                 pokemonImg.setPreserveRatio(true);
@@ -333,41 +428,33 @@ public class PokemonScreen extends Application {
     }
 
     /**
-     * Update the score pane
+     * Update the score pane in the next frame, the updates within a frame
+     * are applied once with the latest message. It can be called from any
+     * thread
      *
      * @param msg The message displayed on the score pane
      */
     public void updateScorePane(Msg msg) {
-        synchronized (scorePane) {
-            Player player = game.player;
-            Label line1 = new Label("Current Score: " + player.getScore());
-            Label line2 = new Label("# of Pokemons caught: " + player.getNumOfPokemons());
-            Label line3 = new Label("# of Pokeballs owned: " + player.getNumOfBalls());
-            Label line4 = new Label();
-            switch (msg) {
-                case NONE:
-                    line4.setText("");
-                    line4.setTextFill(Color.valueOf("black"));
-                    break;
-                case UNCAUGHT:
-                    line4.setText("NOT enough pokemon ball");
-                    line4.setTextFill(Color.valueOf("red"));
-                    break;
-                case CAUGHT:
-                    line4.setText("Pokemon caught!");
-                    line4.setTextFill(Color.valueOf("green"));
-                    break;
-                case ENDGAME:
-                    line4.setText("End Game!");
-                    line4.setTextFill(Color.valueOf("lightgreen"));
-                    break;
-            }
-            HBox btnGp = new HBox(resumeBtn, pauseBtn);
-            btnGp.setSpacing(10);
-            scorePane.getChildren().clear();
-            scorePane.getChildren().addAll(line1, line2, line3, line4, btnGp);
-            scorePane.setSpacing(10);
-        }
+        scoreModel.update(msg);
+    }
+
+    /**
+     * Build the score pane once, the labels are bound to the score model
+     */
+    private void buildScorePane() {
+        Label line1 = new Label();
+        line1.textProperty().bind(Bindings.concat("Current Score: ", scoreModel.scoreProperty().asString()));
+        Label line2 = new Label();
+        line2.textProperty().bind(Bindings.concat("# of Pokemons caught: ", scoreModel.numOfPokemonsProperty().asString()));
+        Label line3 = new Label();
+        line3.textProperty().bind(Bindings.concat("# of Pokeballs owned: ", scoreModel.numOfBallsProperty().asString()));
+        Label line4 = new Label();
+        line4.textProperty().bind(scoreModel.messageProperty());
+        line4.textFillProperty().bind(scoreModel.messageColorProperty());
+        HBox btnGp = new HBox(resumeBtn, pauseBtn);
+        btnGp.setSpacing(10);
+        scorePane.getChildren().addAll(line1, line2, line3, line4, btnGp);
+        scorePane.setSpacing(10);
     }
 
     /**
@@ -377,12 +464,14 @@ public class PokemonScreen extends Application {
      */
     public void showCatchAnimation(boolean caught) {
         catchAnimationThread = new Thread(() -> {
-            ArrayList<Image> frames = (caught ? catchSuccessfulFrames : catchFailedFrames);
+            FrameLoader frames = (caught ? catchSuccessfulFrames : catchFailedFrames);
             try {
                 Platform.runLater(catchAnimationWindow::show);
-                gamePause = PokemonRunnable.gamePause = StationRunnable.gamePause = true;
+                setWorldPaused(true);
                 for (int i = 0; i < frames.size(); i++) {
                     final Image img = frames.get(i);
+                    if (img == null)
+                        continue;
                     Platform.runLater(() -> {
                         catchAnimationImageView.setImage(img);
                     });
@@ -392,8 +481,10 @@ public class PokemonScreen extends Application {
             } catch (InterruptedException e) {
                 System.out.println("Animation window is interrupted, continue the game...");
             } finally {
-                gamePause = avatarPause = PokemonRunnable.gamePause = StationRunnable.gamePause = false;
+                avatarPause = false;
+                setWorldPaused(false);
                 Platform.runLater(catchAnimationWindow::close);
+                frames.release();
             }
         });
         catchAnimationThread.setDaemon(true);
@@ -0,0 +1,134 @@
+package pokemon.ui;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import pokemon.game.Player;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class is responsible for the observable values shown on the score
+ * pane, so that the labels are built once and bound to them while Player
+ * stays free of JavaFX. An update can be requested from any thread, the
+ * values are read from the player at most once per frame on the JavaFX
+ * application thread
+ */
+public class ScoreModel extends AnimationTimer {
+
+    private final Player player;
+    private final IntegerProperty score = new SimpleIntegerProperty();
+    private final IntegerProperty numOfPokemons = new SimpleIntegerProperty();
+    private final IntegerProperty numOfBalls = new SimpleIntegerProperty();
+    private final StringProperty message = new SimpleStringProperty("");
+    private final ObjectProperty<Paint> messageColor = new SimpleObjectProperty<>(Color.valueOf("black"));
+
+    //the message of the latest update requested since the last frame, null if there is none
+    private final AtomicReference<PokemonScreen.Msg> pending = new AtomicReference<>();
+
+    /**
+     * Constructor
+     *
+     * @param player The player whose scores are shown
+     */
+    public ScoreModel(Player player) {
+        this.player = player;
+    }
+
+    /**
+     * Request an update of the values, the updates requested within a frame
+     * are applied once with the latest message. It can be called from any
+     * thread
+     *
+     * @param msg The message displayed on the score pane
+     */
+    public void update(PokemonScreen.Msg msg) {
+        pending.set(msg);
+    }
+
+    /**
+     * Apply the update requested since the last frame
+     *
+     * @param now The time of the frame in nanoseconds
+     */
+    @Override
+    public void handle(long now) {
+        PokemonScreen.Msg msg = pending.getAndSet(null);
+        if (msg == null)
+            return;
+        score.set(player.getScore());
+        numOfPokemons.set(player.getNumOfPokemons());
+        numOfBalls.set(player.getNumOfBalls());
+        switch (msg) {
+            case NONE:
+                message.set("");
+                messageColor.set(Color.valueOf("black"));
+                break;
+            case UNCAUGHT:
+                message.set("NOT enough pokemon ball");
+                messageColor.set(Color.valueOf("red"));
+                break;
+            case CAUGHT:
+                message.set("Pokemon caught!");
+                messageColor.set(Color.valueOf("green"));
+                break;
+            case ENDGAME:
+                message.set("End Game!");
+                messageColor.set(Color.valueOf("lightgreen"));
+                break;
+        }
+    }
+
+    /**
+     * Get the score of the player
+     *
+     * @return The property of the score
+     */
+    public ReadOnlyIntegerProperty scoreProperty() {
+        return score;
+    }
+
+    /**
+     * Get the number of Pokemons caught
+     *
+     * @return The property of the number of Pokemons
+     */
+    public ReadOnlyIntegerProperty numOfPokemonsProperty() {
+        return numOfPokemons;
+    }
+
+    /**
+     * Get the number of Poke balls owned
+     *
+     * @return The property of the number of Poke balls
+     */
+    public ReadOnlyIntegerProperty numOfBallsProperty() {
+        return numOfBalls;
+    }
+
+    /**
+     * Get the message displayed on the score pane
+     *
+     * @return The property of the message
+     */
+    public ObservableValue<String> messageProperty() {
+        return message;
+    }
+
+    /**
+     * Get the color of the message
+     *
+     * @return The property of the color
+     */
+    public ObservableValue<Paint> messageColorProperty() {
+        return messageColor;
+    }
+}
@@ -0,0 +1,132 @@
+package pokemon.ui;
+
+import javafx.scene.image.Image;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * This class is responsible for sharing the icons of the Pokemons, each icon
+ * is decoded once at the size it is shown and kept for every Pokemon with the
+ * same id. The least recently used icons are evicted when the decoded pixels
+ * exceed the memory cap, the image views already showing an evicted icon keep
+ * it until they are gone
+ */
+public class SpriteCache {
+
+    private final int size;
+    private final long maxBytes;
+    private final LinkedHashMap<Integer, Image> sprites = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+    private long hits = 0, misses = 0, evictions = 0;
+
+    /**
+     * Constructor
+     *
+     * @param size     The width and height which the icons are decoded at
+     * @param maxBytes The memory cap of the decoded pixels
+     */
+    public SpriteCache(int size, long maxBytes) {
+        this.size = size;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get the icon of the Pokemon, decode it if it is not in the cache
+     *
+     * @param id The id of the Pokemon in PokemonList
+     * @return The icon
+     */
+    public synchronized Image get(int id) {
+        Image img = sprites.get(id);
+        if (img != null) {
+            hits++;
+            return img;
+        }
+        misses++;
+        img = new Image(new File("icons/" + id + ".png").toURI().toString(), size, size, true, true);
+        sprites.put(id, img);
+        bytes += bytesOf(img);
+
+        //evict the least recently used icons, but never the one just decoded
+        Iterator<Image> it = sprites.values().iterator();
+        while (bytes > maxBytes && sprites.size() > 1) {
+            Image eldest = it.next();
+            it.remove();
+            bytes -= bytesOf(eldest);
+            evictions++;
+        }
+        return img;
+    }
+
+    /**
+     * Remove all the icons, the statistics are kept
+     */
+    public synchronized void clear() {
+        sprites.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Get the number of icons in the cache
+     *
+     * @return The number of icons
+     */
+    public synchronized int size() {
+        return sprites.size();
+    }
+
+    /**
+     * Get the memory used by the decoded pixels of the icons in the cache
+     *
+     * @return The number of bytes
+     */
+    public synchronized long getMemoryBytes() {
+        return bytes;
+    }
+
+    /**
+     * Get the number of icons found in the cache
+     *
+     * @return The number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of icons decoded because they were not in the cache
+     *
+     * @return The number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get the number of icons evicted to stay under the memory cap
+     *
+     * @return The number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d sprites, %d hits, %d misses, %d evictions, %d KB", sprites.size(), hits, misses,
+                evictions, bytes >> 10);
+    }
+
+    /**
+     * Get the memory of the decoded pixels of the image, 4 bytes per pixel. An
+     * image which failed to load is counted at the requested size
+     */
+    private long bytesOf(Image img) {
+        long w = (long) img.getWidth(), h = (long) img.getHeight();
+        if (w <= 0 || h <= 0)
+            w = h = size;
+        return w * h * 4;
+    }
+}
@@ -1,25 +1,16 @@
 package pokemon.ui;
 
-import javafx.application.Platform;
-import javafx.scene.Node;
-import javafx.scene.layout.GridPane;
-import pokemon.game.Cell;
 import pokemon.game.Game;
 import pokemon.game.Map;
 import pokemon.game.Station;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Random;
 
 /**
  * The runnable class of supply station
  */
 public class StationRunnable implements Runnable {
-    private GridPane mapPane;
-    private HashMap<Station, Node> stationViews;
     private Game game;
-    public static boolean gamePause = false;
     private Station station;
     private boolean hidden = false;
     private PokemonScreen pokemonScreen;
@@ -28,14 +19,10 @@ public class StationRunnable implements Runnable {
      * Constructor
      *
      * @param station       The station object
-     * @param mapPane       The game map pane
-     * @param stationViews  The collection of the station image views
      * @param game          The game object
      * @param pokemonScreen The main layout
      */
-    public StationRunnable(Station station, GridPane mapPane, HashMap<Station, Node> stationViews, Game game, PokemonScreen pokemonScreen) {
-        this.mapPane = mapPane;
-        this.stationViews = stationViews;
+    public StationRunnable(Station station, Game game, PokemonScreen pokemonScreen) {
         this.game = game;
         this.station = station;
         this.pokemonScreen = pokemonScreen;
@@ -49,64 +36,32 @@ public class StationRunnable implements Runnable {
     public void run() {
         System.out.println("Station Thread (ID: " + Thread.currentThread().getId() + ") Start!");
         Random random = new Random();
-        while (true) {
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-
-            if (gamePause)
-                continue;
-
-            if (game.player.currentPos().equals(station) && !hidden) {
-                System.out.println("Obtain Pokeballs!");
-                Node node = stationViews.get(station);
+        long signals = game.clock.signals();
+        try {
+            while (true) {
+                game.clock.awaitResume();
 
-                synchronized (game.map) {
-                    Platform.runLater(() -> {
-                        synchronized (mapPane) {
-                            mapPane.getChildren().remove(node);
-                        }
-                    });
-                    game.map.setMap(station, Map.PATH);
-                    game.map.getExistingStations().remove(station);
-                }
-                hidden = true;
+                if (game.player.currentPos().equals(station) && !hidden) {
+                    System.out.println("Obtain Pokeballs!");
+                    game.map.removeEntity(station);
+                    pokemonScreen.entityChanged(station);
+                    hidden = true;
 
-                Platform.runLater(() -> {
                     pokemonScreen.updateScorePane(PokemonScreen.Msg.NONE);
-                });
 
-                try {
-                    int timeRemaining = 5000 + random.nextInt(5000);
-                    while (timeRemaining > 0) {
-                        Thread.sleep(1);
-                        if (!gamePause)
-                            timeRemaining--;
-                    }
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+                    game.clock.awaitUntil(game.clock.now() + 5000 + random.nextInt(5000));
 
-                synchronized (game.map) {
-                    ArrayList<Cell> cells = new ArrayList<>();
-                    for (int i = 0; i < game.map.getDimension().getM(); i++)
-                        for (int j = 0; j < game.map.getDimension().getN(); j++)
-                            if (game.map.getMap()[i][j] == Map.PATH && !game.player.currentPos().equals(new Cell(i, j)))
-                                cells.add(new Cell(i, j));
-                    Cell newPos = cells.get(random.nextInt(cells.size()));
-                    station.setCoordinate(newPos);
-                    game.map.setMap(station, Map.SUPP);
-                    game.map.getExistingStations().add(station);
-                    Platform.runLater(() -> {
-                        synchronized (mapPane) {
-                            mapPane.add(node, station.getN(), station.getM());
-                        }
-                    });
+                    while (!game.map.placeEntity(station, Map.SUPP, random, game.player.currentPos()))
+                        game.clock.awaitUntil(game.clock.now() + 1000);
+                    pokemonScreen.entityChanged(station);
+                    hidden = false;
                 }
-                hidden = false;
+
+                //wait until the player steps on the station
+                signals = game.clock.awaitSignal(signals, Long.MAX_VALUE, station);
             }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
         }
     }
 }
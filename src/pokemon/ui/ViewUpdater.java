@@ -0,0 +1,102 @@
+package pokemon.ui;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.Node;
+import javafx.scene.layout.GridPane;
+import pokemon.game.Cell;
+import pokemon.game.Map;
+import pokemon.game.Pokemon;
+import pokemon.game.Station;
+
+import java.util.IdentityHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class is responsible for moving the views of the pokemons and stations
+ * on the map pane. The simulation only marks the entities which have changed,
+ * from any thread and without locking, and once per frame the views of the
+ * entities marked are moved to where the entities are on the map, or taken
+ * off the pane if the entities are not on the map. An entity which changed
+ * many times in a frame is updated once
+ */
+public class ViewUpdater extends AnimationTimer {
+
+    private final GridPane mapPane;
+    private final Map map;
+
+    //the view and the dirty flag of each entity, they are fixed once the updater is created
+    private final IdentityHashMap<Cell, Node> views = new IdentityHashMap<>();
+    private final IdentityHashMap<Cell, AtomicBoolean> dirty = new IdentityHashMap<>();
+    private final ConcurrentLinkedQueue<Cell> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Constructor
+     *
+     * @param mapPane      The game map pane
+     * @param map          The game map
+     * @param pokemonViews The collection of the pokemon image views
+     * @param stationViews The collection of the station image views
+     */
+    public ViewUpdater(GridPane mapPane, Map map, java.util.Map<Pokemon, Node> pokemonViews, java.util.Map<Station, Node> stationViews) {
+        this.mapPane = mapPane;
+        this.map = map;
+        views.putAll(pokemonViews);
+        views.putAll(stationViews);
+        for (Cell entity : views.keySet())
+            dirty.put(entity, new AtomicBoolean());
+    }
+
+    /**
+     * Mark the entity as changed, its view is updated in the next frame. It
+     * can be called from any thread
+     *
+     * @param entity The pokemon or station
+     */
+    public void markDirty(Cell entity) {
+        AtomicBoolean flag = dirty.get(entity);
+        if (flag != null && flag.compareAndSet(false, true))
+            queue.add(entity);
+    }
+
+    /**
+     * Update the views of the entities marked since the last frame
+     *
+     * @param now The time of the frame in nanoseconds
+     */
+    @Override
+    public void handle(long now) {
+        if (queue.isEmpty())
+            return;
+        synchronized (mapPane) {
+            Cell entity;
+            while ((entity = queue.poll()) != null) {
+                //clear the flag first, so a change made while the view is updated marks it again
+                dirty.get(entity).set(false);
+                update(entity);
+            }
+        }
+    }
+
+    /**
+     * Put the view of the entity where the entity is, or take it off the pane
+     * if the entity is not on the map
+     *
+     * @param entity The pokemon or station
+     */
+    private void update(Cell entity) {
+        Node node = views.get(entity);
+        int m = entity.getM(), n = entity.getN();
+        Cell cell = new Cell(m, n);
+        boolean shown = !map.isOutOfBound(cell)
+                && (entity instanceof Pokemon ? map.getPokemon(cell) : map.getStation(cell)) == entity;
+        boolean attached = node.getParent() == mapPane;
+        if (!shown) {
+            if (attached)
+                mapPane.getChildren().remove(node);
+        } else if (attached)
+            GridPane.setConstraints(node, n, m);
+        else
+            mapPane.add(node, n, m);
+    }
+}
@@ -0,0 +1,164 @@
+package pokemon.game;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This class is responsible for testing that the distance table derived from
+ * the previous one after the Pokemons and stations have moved, left or
+ * respawned is the same as the table computed from scratch, and that the
+ * shortest ways it finds are walks of the right length which do not pass any
+ * other Pokemon, station or the destination. The maps are random, with
+ * walls, Pokemons and stations
+ * <p>
+ * Usage: java pokemon.game.DistanceTableTest [number of maps]
+ */
+public class DistanceTableTest {
+
+    private static final int STEPS = 40;
+
+    private static int checks = 0, failures = 0;
+
+    public static void main(String[] args) {
+        int maps = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        for (int seed = 0; seed < maps; seed++) {
+            Random random = new Random(seed);
+            ArrayList<Cell> entities = new ArrayList<>();
+            Map map = generate(random, 3 + random.nextInt(10), 3 + random.nextInt(10), random.nextInt(8), entities);
+            map.getDistanceTable();
+            for (int step = 0; step < STEPS; step++) {
+                //one to three Pokemons or stations move, leave or respawn between two tables
+                for (int op = 1 + random.nextInt(3); op > 0 && !entities.isEmpty(); op--) {
+                    Cell entity = entities.get(random.nextInt(entities.size()));
+                    char type = entity instanceof Pokemon ? Map.POKE : Map.SUPP;
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            Cell to = map.randomFreeCell(random, null);
+                            if (to != null && isOnMap(map, entity))
+                                map.moveEntity(entity, to, type);
+                            break;
+                        case 1:
+                            map.removeEntity(entity);
+                            break;
+                        default:
+                            if (!isOnMap(map, entity))
+                                map.placeEntity(entity, type, random, null);
+                    }
+                }
+                checkTable("map " + seed + " step " + step, map);
+            }
+        }
+
+        System.out.println("DistanceTableTest: " + (checks - failures) + "/" + checks + " checks passed");
+        if (failures > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Compare the table derived from the previous one with the table computed
+     * from scratch, and check the shortest ways between every two points
+     */
+    private static void checkTable(String name, Map map) {
+        DistanceTable derived = map.getDistanceTable(), full = new DistanceTable(map, 0);
+        check(name + " size", full.size(), derived.size());
+        if (full.size() != derived.size())
+            return;
+
+        //the points kept from the previous table come first, match them by entity
+        int[] at = new int[full.size()];
+        for (int i = 0; i < full.size(); i++) {
+            at[i] = -1;
+            for (int j = 0; j < derived.size(); j++)
+                if (derived.getPoint(j).equals(full.getPoint(i)) && derived.getEntity(j) == full.getEntity(i))
+                    at[i] = j;
+            check(name + " point " + full.getPoint(i), true, at[i] >= 0);
+            if (at[i] < 0)
+                return;
+        }
+
+        for (int i = 0; i < full.size(); i++) {
+            check(name + " " + full.getPoint(i) + " to the destination", full.getDistanceToDestination(i),
+                    derived.getDistanceToDestination(at[i]));
+            for (int j = 0; j < full.size(); j++) {
+                check(name + " " + full.getPoint(i) + " to " + full.getPoint(j), full.getDistance(i, j),
+                        derived.getDistance(at[i], at[j]));
+                if (i != j)
+                    checkPath(name + " way " + full.getPoint(i) + " to " + full.getPoint(j), map, derived, at[i], at[j]);
+            }
+        }
+    }
+
+    /**
+     * Check that the way is a walk of the length of the distance, which does
+     * not pass any other Pokemon, station or the destination
+     */
+    private static void checkPath(String name, Map map, DistanceTable table, int from, int to) {
+        List<Cell> path = table.getPath(from, to);
+        if (table.getDistance(from, to) == DistanceTable.UNREACHABLE) {
+            check(name, null, path);
+            return;
+        }
+        check(name + " length", table.getDistance(from, to), path.size());
+        Cell last = table.getPoint(from);
+        boolean walk = true;
+        for (int k = 0; k < path.size(); k++) {
+            Cell cell = path.get(k);
+            walk &= Math.abs(cell.getM() - last.getM()) + Math.abs(cell.getN() - last.getN()) == 1 && !map.isWall(cell);
+            //the starting point is an empty path once the player has left it
+            if (k < path.size() - 1)
+                for (int p = DistanceTable.DEST; p < table.size(); p++)
+                    walk &= !table.getPoint(p).equals(cell);
+            last = cell;
+        }
+        check(name + " is a walk", true, walk && last.equals(table.getPoint(to)));
+    }
+
+    private static boolean isOnMap(Map map, Cell entity) {
+        return entity instanceof Pokemon ? map.getPokemon(entity) == entity : map.getStation(entity) == entity;
+    }
+
+    /**
+     * Generate a random map with the starting point, the destination, walls
+     * and the given number of Pokemons and stations at most
+     */
+    private static Map generate(Random random, int rows, int cols, int numOfEntities, ArrayList<Cell> entities) {
+        ArrayList<Integer> cells = new ArrayList<>();
+        for (int i = 0; i < rows * cols; i++)
+            cells.add(i);
+        Collections.shuffle(cells, random);
+        Map map = new Map(rows, cols);
+        double walls = random.nextDouble() * 0.4;
+        for (int k = 0; k < cells.size(); k++) {
+            int cell = cells.get(k);
+            map.loadCell(cell / cols, cell % cols, (byte) (k == 0 ? Map.START : k == 1 ? Map.DEST
+                    : random.nextDouble() < walls ? Map.WALL : Map.PATH));
+        }
+        for (int e = 0; e < numOfEntities; e++) {
+            Cell cell = map.randomFreeCell(random, null);
+            if (cell == null)
+                break;
+            if (random.nextBoolean()) {
+                Pokemon pkm = new Pokemon(cell.getM(), cell.getN(), "P" + e, "T" + e % 3, e, 1);
+                map.setMap(pkm, Map.POKE);
+                map.addPokemon(pkm);
+                entities.add(pkm);
+            } else {
+                Station stn = new Station(cell.getM(), cell.getN(), 3);
+                map.setMap(stn, Map.SUPP);
+                map.addStation(stn);
+                entities.add(stn);
+            }
+        }
+        return map;
+    }
+
+    private static void check(String name, Object expected, Object actual) {
+        checks++;
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            failures++;
+            System.out.println("FAILED " + name + ": expected " + expected + " but was " + actual);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package pokemon.game;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class is responsible for measuring how the moves of the Pokemons scale
+ * with the number of threads. Each thread walks its own Pokemons around its
+ * own band of rows of an open map, with the striped locks of Map, and with
+ * every move under one monitor as the map was guarded before. With striped
+ * locks the throughput should grow with the number of threads up to the
+ * number of cores, with one monitor it should not
+ * <p>
+ * Usage: java pokemon.game.MapContentionBenchmark [max threads] [milliseconds per run]
+ */
+public class MapContentionBenchmark {
+
+    private static final int SIZE = 512, POKEMONS_PER_THREAD = 64;
+
+    public static void main(String[] args) throws InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Math.max(2, cores * 2);
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        System.out.println(cores + " cores, " + SIZE + " x " + SIZE + " map, " + POKEMONS_PER_THREAD
+                + " Pokemons per thread, " + millis + " ms per run");
+        System.out.printf("%8s %18s %18s%n", "threads", "striped (moves/s)", "monitor (moves/s)");
+        for (int threads = 1; threads <= maxThreads; threads *= 2)
+            System.out.printf("%8d %18.0f %18.0f%n", threads, run(threads, millis, false), run(threads, millis, true));
+    }
+
+    /**
+     * Move the Pokemons with the given number of threads
+     *
+     * @param threads The number of threads
+     * @param millis  The duration of the run
+     * @param monitor Whether every move is made under one monitor
+     * @return The number of moves per second
+     */
+    private static double run(int threads, long millis, boolean monitor) throws InterruptedException {
+        Map map = new Map(SIZE, SIZE);
+        for (int i = 0; i < SIZE; i++)
+            for (int j = 0; j < SIZE; j++)
+                map.loadCell(i, j, (byte) Map.PATH);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong moves = new AtomicLong();
+        CountDownLatch ready = new CountDownLatch(threads), go = new CountDownLatch(1);
+        ArrayList<Thread> workers = new ArrayList<>();
+        int band = SIZE / threads;
+        for (int t = 0; t < threads; t++) {
+            int firstRow = t * band;
+            Thread worker = new Thread(() -> {
+                Random random = new Random(firstRow);
+                ArrayList<Pokemon> pokemons = new ArrayList<>();
+                for (int k = 0; k < POKEMONS_PER_THREAD; k++) {
+                    Pokemon pkm = new Pokemon(firstRow + random.nextInt(band), random.nextInt(SIZE), "P" + k, "Bug", 1, 0);
+                    // the bands of the threads share stripes, the cell is set under its lock
+                    ReentrantLock lock = map.getLock(pkm);
+                    lock.lock();
+                    try {
+                        if (map.getType(pkm) != Map.PATH)
+                            continue;
+                        map.setMap(pkm, Map.POKE);
+                    } finally {
+                        lock.unlock();
+                    }
+                    map.addPokemon(pkm);
+                    pokemons.add(pkm);
+                }
+                ready.countDown();
+                long done = 0;
+                try {
+                    go.await();
+                    while (running.get()) {
+                        Pokemon pkm = pokemons.get(random.nextInt(pokemons.size()));
+                        Cell to;
+                        switch (random.nextInt(4)) {
+                            case 0:
+                                to = pkm.up();
+                                break;
+                            case 1:
+                                to = pkm.down();
+                                break;
+                            case 2:
+                                to = pkm.left();
+                                break;
+                            default:
+                                to = pkm.right();
+                        }
+                        //stay inside the band of the thread
+                        if (to.getM() < firstRow || to.getM() >= firstRow + band || map.isOutOfBound(to))
+                            continue;
+                        boolean moved;
+                        if (monitor)
+                            synchronized (map) {
+                                moved = map.moveEntity(pkm, to, Map.POKE);
+                            }
+                        else
+                            moved = map.moveEntity(pkm, to, Map.POKE);
+                        if (moved)
+                            done++;
+                    }
+                } catch (InterruptedException e) {
+                    //stopped by the benchmark
+                }
+                moves.addAndGet(done);
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        Thread.sleep(millis);
+        running.set(false);
+        for (Thread worker : workers)
+            worker.join();
+        return moves.get() / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,237 @@
+package pokemon.game;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is responsible for testing the searches of the best route
+ * against an exhaustive search. The exhaustive search is a BFS over the cells
+ * with the set of the Pokemons caught and the stations visited, so it finds
+ * the maximum score of any walk and only works for a few entities. The maps
+ * are random, with walls, Pokemons and stations
+ * <p>
+ * Usage: java pokemon.game.PathFinderTest [number of maps], from the
+ * directory of sampleIn.txt
+ */
+public class PathFinderTest {
+
+    private static final String[] TYPES = {"Fire", "Water", "Bug", "Flying", "Grass", "Rock"};
+    private static final int MISSING = Integer.MIN_VALUE;
+
+    private static int checks = 0, failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        int maps = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+
+        Game sample = new Game();
+        sample.initialize(new File("sampleIn.txt"));
+        checkMap("sample", sample.map);
+
+        Random random = new Random(2021);
+        for (int i = 0; i < maps; i++) {
+            int rows = 3 + random.nextInt(9), cols = 3 + random.nextInt(9);
+            checkMap("map " + i, generate(random, rows, cols, Math.min(random.nextInt(11), rows * cols - 2)));
+        }
+
+        System.out.println("PathFinderTest: " + (checks - failures) + "/" + checks + " checks passed");
+        if (failures > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Compare every search with the exhaustive search on the map
+     */
+    private static void checkMap(String name, Map map) {
+        int expected = exhaustive(map);
+
+        PathFinder finder = new PathFinder(map);
+        Player player = finder.findBestRoute();
+        check(name + " sequential", expected, player == null ? MISSING : player.getScore());
+        if (player != null)
+            checkRoute(name + " route", map, player);
+
+        Player parallel = new PathFinder(map).findBestRoute(ForkJoinPool.commonPool());
+        check(name + " parallel", expected, parallel == null ? MISSING : parallel.getScore());
+        Player again = new PathFinder(map).findBestRoute(ForkJoinPool.commonPool());
+        check(name + " parallel route is deterministic", parallel == null ? null : parallel.getRoute().toString(),
+                again == null ? null : again.getRoute().toString());
+
+        Player anytime = new PathFinder(map).findBestRoute(10, TimeUnit.SECONDS, null);
+        check(name + " anytime", expected, anytime == null ? MISSING : anytime.getScore());
+
+        int explored = new StateExplorer(map, new TranspositionTable(1 << 16)).explore(Integer.MAX_VALUE);
+        check(name + " state explorer", expected == MISSING ? TranspositionTable.MISSING : expected, explored);
+    }
+
+    /**
+     * Check that the route goes from the starting point to the destination one
+     * step at a time, and that walking it gives the score of the player
+     */
+    private static void checkRoute(String name, Map map, Player player) {
+        List<Cell> route = player.getRoute();
+        boolean valid = route.get(0).equals(map.getStart()) && route.get(route.size() - 1).equals(map.getDestination());
+        for (int i = 1; i < route.size(); i++) {
+            Cell a = route.get(i - 1), b = route.get(i);
+            valid &= Math.abs(a.getM() - b.getM()) + Math.abs(a.getN() - b.getN()) == 1 && !map.isWall(b);
+            valid &= !a.equals(map.getDestination());
+        }
+        check(name + " is a walk to the destination", true, valid);
+        check(name + " score", player.getScore(), walk(map, route));
+    }
+
+    /**
+     * Get the score of the walk, the entities are taken as they are on the map
+     */
+    private static int walk(Map map, List<Cell> route) {
+        int cols = map.getDimension().getN();
+        HashSet<Integer> visited = new HashSet<>();
+        HashSet<String> species = new HashSet<>();
+        int balls = 0, caught = 0, maxPower = 0;
+        for (Cell cell : route) {
+            int index = cell.getM() * cols + cell.getN();
+            if (visited.contains(index))
+                continue;
+            Station stn = map.getStation(cell);
+            Pokemon pkm = map.getPokemon(cell);
+            if (stn != null && map.isSupplyStation(cell)) {
+                balls += stn.getBallsProvided();
+                visited.add(index);
+            } else if (pkm != null && map.isPokemon(cell) && pkm.canBeCaught(balls)) {
+                balls -= pkm.getBallsRequired();
+                caught++;
+                species.add(pkm.getType());
+                maxPower = Math.max(maxPower, pkm.getPower());
+                visited.add(index);
+            }
+        }
+        return balls + 5 * caught + 10 * species.size() + maxPower - (route.size() - 1);
+    }
+
+    /**
+     * Find the maximum score with a BFS over the cells and the sets of the
+     * entities visited, a state reached again later has the same future with
+     * more steps
+     *
+     * @return The maximum score, MISSING if the destination cannot be reached
+     */
+    static int exhaustive(Map map) {
+        Cell dimension = map.getDimension();
+        int rows = dimension.getM(), cols = dimension.getN();
+        ArrayList<Cell> entities = new ArrayList<>();
+        HashMap<Integer, Integer> entityAt = new HashMap<>();
+        for (Pokemon pkm : map.getExistingPokemons())
+            if (map.isPokemon(pkm) && map.getPokemon(pkm) == pkm) {
+                entityAt.put(pkm.getM() * cols + pkm.getN(), entities.size());
+                entities.add(pkm);
+            }
+        for (Station stn : map.getExistingStations())
+            if (map.isSupplyStation(stn) && map.getStation(stn) == stn) {
+                entityAt.put(stn.getM() * cols + stn.getN(), entities.size());
+                entities.add(stn);
+            }
+
+        //the Poke balls and the score without the steps of each set of entities visited
+        int sets = 1 << entities.size();
+        int[] balls = new int[sets], value = new int[sets];
+        for (int set = 0; set < sets; set++) {
+            int caught = 0, maxPower = 0;
+            HashSet<String> species = new HashSet<>();
+            for (int i = 0; i < entities.size(); i++)
+                if ((set >> i & 1) != 0) {
+                    Cell entity = entities.get(i);
+                    if (entity instanceof Station)
+                        balls[set] += ((Station) entity).getBallsProvided();
+                    else {
+                        Pokemon pkm = (Pokemon) entity;
+                        balls[set] -= pkm.getBallsRequired();
+                        caught++;
+                        species.add(pkm.getType());
+                        maxPower = Math.max(maxPower, pkm.getPower());
+                    }
+                }
+            value[set] = balls[set] + 5 * caught + 10 * species.size() + maxPower;
+        }
+
+        int[][] steps = new int[rows * cols][sets];
+        for (int[] row : steps)
+            Arrays.fill(row, -1);
+        int start = map.getStart().getM() * cols + map.getStart().getN();
+        int dest = map.getDestination().getM() * cols + map.getDestination().getN();
+        ArrayDeque<int[]> queue = new ArrayDeque<>();
+        steps[start][0] = 0;
+        queue.add(new int[]{start, 0});
+        int best = MISSING;
+        while (!queue.isEmpty()) {
+            int[] state = queue.poll();
+            int cell = state[0], set = state[1], d = steps[cell][set];
+            if (cell == dest) {
+                best = Math.max(best, value[set] - d);
+                continue;
+            }
+            int m = cell / cols, n = cell % cols;
+            int[] next = {m > 0 ? cell - cols : -1, m < rows - 1 ? cell + cols : -1, n > 0 ? cell - 1 : -1, n < cols - 1 ? cell + 1 : -1};
+            for (int c : next) {
+                if (c < 0 || map.isWall(new Cell(c / cols, c % cols)))
+                    continue;
+                int nextSet = set;
+                Integer e = entityAt.get(c);
+                if (e != null && (set >> e & 1) == 0) {
+                    Cell entity = entities.get(e);
+                    if (entity instanceof Station || balls[set] >= ((Pokemon) entity).getBallsRequired())
+                        nextSet |= 1 << e;
+                }
+                if (steps[c][nextSet] < 0) {
+                    steps[c][nextSet] = d + 1;
+                    queue.add(new int[]{c, nextSet});
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Generate a map with walls on about a fifth of the cells
+     */
+    static Map generate(Random random, int rows, int cols, int numOfEntities) {
+        ArrayList<Integer> cells = new ArrayList<>();
+        for (int i = 0; i < rows * cols; i++)
+            cells.add(i);
+        Collections.shuffle(cells, random);
+        Map map = new Map(rows, cols);
+        int start = cells.get(0), dest = cells.get(1);
+        for (int i = 0; i < rows * cols; i++)
+            map.loadCell(i / cols, i % cols, (byte) (i == start ? Map.START : i == dest ? Map.DEST
+                    : random.nextInt(5) == 0 && cells.indexOf(i) >= 2 + numOfEntities ? Map.WALL : Map.PATH));
+        for (int e = 0; e < numOfEntities; e++) {
+            int cell = cells.get(2 + e);
+            if (random.nextInt(3) == 0) {
+                Station stn = new Station(cell / cols, cell % cols, 1 + random.nextInt(5));
+                map.setMap(stn, Map.SUPP);
+                map.addStation(stn);
+            } else {
+                Pokemon pkm = new Pokemon(cell / cols, cell % cols, "P" + e, TYPES[random.nextInt(TYPES.length)],
+                        random.nextInt(200), 1 + random.nextInt(6));
+                map.setMap(pkm, Map.POKE);
+                map.addPokemon(pkm);
+            }
+        }
+        return map;
+    }
+
+    private static void check(String name, Object expected, Object actual) {
+        checks++;
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            failures++;
+            System.out.println("FAILED " + name + ": expected\n" + expected + "\nbut was\n" + actual);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package pokemon.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * This class is responsible for testing the repaired plan of the replanner
+ * against a Dijkstra search computed from scratch with the same costs, while
+ * the Pokemons and stations move and the player walks the plan, catches
+ * Pokemons and visits stations. The player is replaced halfway through each
+ * walk. The last map is large, the time of each repair is reported for it
+ * next to the time of the search from scratch
+ * <p>
+ * Usage: java pokemon.game.ReplannerTest [number of maps]
+ */
+public class ReplannerTest {
+
+    private static final int STEPS = 300, LARGE = 200;
+
+    private static int checks = 0, failures = 0;
+
+    public static void main(String[] args) {
+        int maps = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        for (int i = 0; i < maps; i++) {
+            Random random = new Random(i);
+            boolean large = i == maps - 1;
+            int rows = large ? LARGE : 5 + i % 20, cols = large ? LARGE : 5 + i / 7 % 20;
+            Map map = PathFinderTest.generate(random, rows, cols, large ? 2 * LARGE : i % 25);
+            if (map.getDistanceTable() == null)
+                continue;
+            walk("map " + i, map, random, large);
+        }
+
+        System.out.println("ReplannerTest: " + (checks - failures) + "/" + checks + " checks passed");
+        if (failures > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Walk the plan of the replanner from the starting point, moving a few
+     * entities before every step, and compare each plan with the search from
+     * scratch
+     */
+    private static void walk(String name, Map map, Random random, boolean report) {
+        Game game = new Game();
+        game.map = map;
+        game.player = new Player();
+        game.player.move(map.getStart(), map);
+        Replanner replanner = new Replanner(game);
+        long total = 0, max = 0, full = 0;
+        int plans = 0;
+
+        for (int step = 0; step < STEPS; step++) {
+            if (step == STEPS / 3) {
+                game.player = new Player();
+                game.player.move(map.getStart(), map);
+            }
+            for (int k = 0; k < 3; k++)
+                moveEntity(map, replanner, random, game.player.currentPos());
+
+            int cost = replanner.getCost();
+            total += replanner.getLastPlanNanos();
+            max = Math.max(max, replanner.getLastPlanNanos());
+            plans++;
+            long begin = System.nanoTime();
+            int expected = dijkstra(map, game.player);
+            full += System.nanoTime() - begin;
+            check(name + " step " + step + " cost", expected == Integer.MAX_VALUE ? null : expected,
+                    cost == Integer.MAX_VALUE ? null : cost);
+
+            Cell next = replanner.getNextStep();
+            if (next == null)
+                break;
+            check(name + " step " + step + " is a step", 1,
+                    Math.abs(next.getM() - game.player.currentPos().getM()) + Math.abs(next.getN() - game.player.currentPos().getN()));
+
+            //the visited station and the caught Pokemon leave the map, as in the game
+            boolean station = map.isSupplyStation(next);
+            Cell entity = station ? map.getStation(next) : map.getPokemon(next);
+            int caught = game.player.getNumOfPokemons();
+            game.player.move(next, map);
+            if (entity != null && (station || game.player.getNumOfPokemons() > caught)) {
+                replanner.entityRemoved(entity);
+                map.removeEntity(entity);
+                if (station)
+                    replanner.stationVisited((Station) entity);
+                else
+                    replanner.pokemonEncountered((Pokemon) entity, true);
+            }
+            if (map.isDestination(next))
+                break;
+        }
+
+        if (report)
+            System.out.println(name + " " + map.getDimension().getM() + "x" + map.getDimension().getN() + ": repair avg "
+                    + total / plans / 1000 + "us, max " + max / 1000 + "us, search from scratch avg "
+                    + full / plans / 1000 + "us over " + plans + " plans");
+    }
+
+    /**
+     * Move an entity to a random free cell or next to where it is, reporting
+     * the move to the replanner as the WorldTicker does
+     */
+    private static void moveEntity(Map map, Replanner replanner, Random random, Cell player) {
+        ArrayList<Cell> entities = new ArrayList<>(map.getExistingPokemons());
+        entities.addAll(map.getExistingStations());
+        if (entities.isEmpty())
+            return;
+        Cell entity = entities.get(random.nextInt(entities.size()));
+        Cell to = map.randomFreeCell(random, player);
+        if (to == null)
+            return;
+        if (random.nextBoolean()) {
+            Cell[] next = {entity.up(), entity.down(), entity.left(), entity.right()};
+            Cell cell = next[random.nextInt(4)];
+            if (!map.isOutOfBound(cell) && map.getType(cell) == Map.PATH)
+                to = cell;
+        }
+        replanner.entityRemoved(entity);
+        map.moveEntity(entity, to, entity instanceof Pokemon ? Map.POKE : Map.SUPP);
+        replanner.entityPlaced(entity);
+    }
+
+    /**
+     * Find the cost of the shortest route from the player to the destination
+     * with a Dijkstra search from the destination. A step costs 1, plus the
+     * score lost by catching a Pokemon which is not worth its Poke balls
+     *
+     * @return The cost, Integer.MAX_VALUE if the destination cannot be reached
+     */
+    private static int dijkstra(Map map, Player player) {
+        int rows = map.getDimension().getM(), cols = map.getDimension().getN();
+        byte[] grid = map.getGrid();
+        HashSet<String> species = new HashSet<>();
+        int maxPower = 0;
+        for (Pokemon pkm : player.getPokemons()) {
+            species.add(pkm.getType());
+            maxPower = Math.max(maxPower, pkm.getPower());
+        }
+
+        int[] cost = new int[rows * cols];
+        for (int i = 0; i < rows * cols; i++) {
+            cost[i] = 1;
+            Pokemon pkm = map.getPokemon(new Cell(i / cols, i % cols));
+            if (pkm != null && pkm.canBeCaught(player.getNumOfBalls())) {
+                int gain = 5 - pkm.getBallsRequired() + (species.contains(pkm.getType()) ? 0 : 10)
+                        + Math.max(0, pkm.getPower() - maxPower);
+                cost[i] += Math.max(0, -gain);
+            }
+        }
+
+        int[] dist = new int[rows * cols];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        int goal = map.getDestination().getM() * cols + map.getDestination().getN();
+        dist[goal] = 0;
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        queue.add(new long[]{0, goal});
+        while (!queue.isEmpty()) {
+            long[] top = queue.poll();
+            int u = (int) top[1];
+            if (top[0] > dist[u])
+                continue;
+            int[] next = {u >= cols ? u - cols : -1, u + cols < rows * cols ? u + cols : -1,
+                    u % cols > 0 ? u - 1 : -1, u % cols < cols - 1 ? u + 1 : -1};
+            //entering u from v costs the cost of u
+            for (int v : next)
+                if (v >= 0 && grid[v] != Map.WALL && dist[u] + cost[u] < dist[v]) {
+                    dist[v] = dist[u] + cost[u];
+                    queue.add(new long[]{dist[v], v});
+                }
+        }
+        Cell from = player.currentPos();
+        return dist[from.getM() * cols + from.getN()];
+    }
+
+    private static void check(String name, Object expected, Object actual) {
+        checks++;
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            failures++;
+            System.out.println("FAILED " + name + ": expected " + expected + " but was " + actual);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package pokemon.game;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * This class is responsible for comparing the time to load a game from the
+ * text input file, streamed or memory-mapped, with the time to load it from a
+ * binary snapshot. A random map of the given size is generated into a
+ * temporary file, every load is repeated and the best time is reported
+ * <p>
+ * Usage: java pokemon.game.SnapshotBenchmark [rows] [columns] [entities]
+ */
+public class SnapshotBenchmark {
+
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int cols = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int entities = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+
+        File text = File.createTempFile("pokemon", ".txt");
+        File snapshot = File.createTempFile("pokemon", ".snapshot");
+        text.deleteOnExit();
+        snapshot.deleteOnExit();
+        generate(text, rows, cols, entities, new Random(42));
+        Game game = new Game();
+        game.initialize(text);
+        game.save(snapshot);
+        System.out.printf("%d x %d map, %d entities, text %d KB, snapshot %d KB%n", rows, cols, entities,
+                text.length() >> 10, snapshot.length() >> 10);
+
+        long streamed = Long.MAX_VALUE, mapped = Long.MAX_VALUE, saved = Long.MAX_VALUE, loaded = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long t = System.nanoTime();
+            new Game().initialize(text, false);
+            streamed = Math.min(streamed, System.nanoTime() - t);
+
+            t = System.nanoTime();
+            new Game().initialize(text, true);
+            mapped = Math.min(mapped, System.nanoTime() - t);
+
+            t = System.nanoTime();
+            game.save(snapshot);
+            saved = Math.min(saved, System.nanoTime() - t);
+
+            t = System.nanoTime();
+            new Game().load(snapshot);
+            loaded = Math.min(loaded, System.nanoTime() - t);
+        }
+        System.out.printf("text, streamed      %8.1f ms%n", streamed / 1e6);
+        System.out.printf("text, memory-mapped %8.1f ms%n", mapped / 1e6);
+        System.out.printf("snapshot, save      %8.1f ms%n", saved / 1e6);
+        System.out.printf("snapshot, load      %8.1f ms%n", loaded / 1e6);
+    }
+
+    /**
+     * Write a random map in the format of the input file, a quarter of the
+     * cells are walls and the entities are on distinct path cells
+     */
+    static void generate(File file, int rows, int cols, int entities, Random random) throws IOException {
+        char[][] grid = new char[rows][cols];
+        for (char[] row : grid)
+            for (int j = 0; j < cols; j++)
+                row[j] = random.nextInt(4) == 0 ? Map.WALL : Map.PATH;
+        grid[0][0] = Map.START;
+        grid[rows - 1][cols - 1] = Map.DEST;
+        String[] types = {"Fire", "Water", "Bug", "Flying"};
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+            out.write(rows + " " + cols + "\n");
+            StringBuilder entityLines = new StringBuilder();
+            for (int placed = 0; placed < entities; ) {
+                int m = random.nextInt(rows), n = random.nextInt(cols);
+                if (grid[m][n] != Map.PATH)
+                    continue;
+                if (random.nextBoolean()) {
+                    grid[m][n] = Map.POKE;
+                    entityLines.append('<').append(m).append(',').append(n).append(">, Pkm").append(placed).append(", ")
+                            .append(types[random.nextInt(types.length)]).append(", ").append(random.nextInt(200))
+                            .append(", ").append(random.nextInt(8)).append('\n');
+                } else {
+                    grid[m][n] = Map.SUPP;
+                    entityLines.append('<').append(m).append(',').append(n).append(">, ").append(random.nextInt(10))
+                            .append('\n');
+                }
+                placed++;
+            }
+            for (char[] row : grid) {
+                out.write(row);
+                out.write('\n');
+            }
+            out.write(entityLines.toString());
+        }
+    }
+}
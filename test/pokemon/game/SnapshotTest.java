@@ -0,0 +1,164 @@
+package pokemon.game;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+/**
+ * This class is responsible for testing that a binary snapshot restores the
+ * same game as the text loader, including the Pokemons and stations waiting
+ * to respawn, and that a corrupt snapshot is rejected with an IOException
+ * <p>
+ * Usage: java pokemon.game.SnapshotTest, from the directory of sampleIn.txt
+ */
+public class SnapshotTest {
+
+    private static int checks = 0, failures = 0;
+
+    public static void main(String[] args) throws Exception {
+        //a game loaded from the text file is restored as it is
+        Game text = new Game();
+        text.initialize(new File("sampleIn.txt"));
+        check("fresh game", describe(text), describe(roundTrip(text)));
+
+        //the player picked the station at <8,4> and caught Kakuna, which is still on the map,
+        //Pidgey and the station at <8,14> are waiting to respawn
+        Game played = new Game();
+        played.initialize(new File("sampleIn.txt"));
+        played.map.setMap(played.map.getStart(), Map.PATH);
+        Cell pos = played.map.getStart();
+        played.player.move(pos, played.map);
+        for (int i = 0; i < 10; i++)
+            played.player.move(pos = pos.right(), played.map);
+        played.map.removeEntity(played.map.getPokemon(new Cell(4, 4)));
+        played.map.removeEntity(played.map.getStation(new Cell(8, 14)));
+        Game restored = roundTrip(played);
+        check("played game", describe(played), describe(restored));
+        check("caught Pokemon on the map is shared", true,
+                restored.player.getPokemons().get(0) == restored.map.getPokemon(new Cell(8, 10)));
+        check("hidden Pokemon", 1, restored.map.getHiddenPokemons().size());
+        check("hidden station", 1, restored.map.getHiddenStations().size());
+
+        //corrupt snapshots
+        byte[] bytes = write(played);
+        int cells = 10 * 20, grid = 16 + 16 + 4 + 4 * ByteBuffer.wrap(bytes).getInt(32) + 4;
+        expectRejected("bad magic", patchInt(bytes, 0, 0));
+        expectRejected("bad version", patchInt(bytes, 4, 99));
+        expectRejected("negative rows", patchInt(bytes, 8, -1));
+        expectRejected("zero columns", patchInt(bytes, 12, 0));
+        expectRejected("overflowing dimension", patchInt(patchInt(bytes, 8, 1 << 20), 12, 1 << 20));
+        expectRejected("grid longer than the file", patchInt(bytes, 8, 1000));
+        expectRejected("start out of the map", patchInt(bytes, 16, 10));
+        expectRejected("wrong number of stripes", patchInt(bytes, 32, 63));
+        expectRejected("wrong free count", patchInt(bytes, 36, 1 << 20));
+        expectRejected("wrong checksum", patchInt(bytes, grid - 4, 0));
+        byte[] badCell = bytes.clone();
+        badCell[grid + 5] = 'x';
+        expectRejected("invalid cell", badCell);
+        int strings = grid + cells;
+        expectRejected("negative number of strings", patchInt(bytes, strings, -5));
+        int pokemons = skipStrings(bytes, strings);
+        expectRejected("Pokemon out of the map", patchInt(bytes, pokemons + 4 + 4, 20));
+        expectRejected("Pokemon not on a Pokemon cell", patchInt(bytes, pokemons + 4 + 4, 0));
+        expectRejected("invalid string id", patchInt(bytes, pokemons + 4 + 8, 1 << 30));
+        expectRejected("negative string id", patchInt(bytes, pokemons + 4 + 12, -1));
+        for (int length : new int[]{0, 7, grid + cells / 2, bytes.length / 2, bytes.length - 1})
+            expectRejected("truncated at " + length, Arrays.copyOf(bytes, length));
+
+        System.out.println("SnapshotTest: " + (checks - failures) + "/" + checks + " checks passed");
+        if (failures > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Write the game into a snapshot and read it into a new game
+     */
+    static Game roundTrip(Game game) throws IOException {
+        Game restored = new Game();
+        Snapshot.read(restored, Channels.newChannel(new ByteArrayInputStream(write(game))));
+        return restored;
+    }
+
+    static byte[] write(Game game) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Snapshot.write(game, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    /**
+     * Describe everything a snapshot has to restore
+     */
+    static String describe(Game game) {
+        Map map = game.map;
+        StringBuilder b = new StringBuilder();
+        Cell dimension = map.getDimension();
+        b.append(dimension).append(map.getStart()).append(map.getDestination()).append('\n');
+        for (int i = 0; i < dimension.getM(); i++) {
+            for (int j = 0; j < dimension.getN(); j++)
+                b.append(map.getType(i, j));
+            b.append('\n');
+        }
+        for (Pokemon pkm : map.getExistingPokemons())
+            b.append("pokemon ").append(describe(pkm)).append(map.getPokemon(pkm) == pkm).append('\n');
+        for (Station stn : map.getExistingStations())
+            b.append("station ").append(stn).append(stn.getBallsProvided()).append(map.getStation(stn) == stn).append('\n');
+        for (Pokemon pkm : map.getHiddenPokemons())
+            b.append("hidden pokemon ").append(describe(pkm)).append('\n');
+        for (Station stn : map.getHiddenStations())
+            b.append("hidden station ").append(stn).append(stn.getBallsProvided()).append('\n');
+        b.append("free ").append(map.getNumOfFreeCells()).append('\n');
+        for (Pokemon pkm : game.player.getPokemons())
+            b.append("caught ").append(describe(pkm)).append('\n');
+        b.append(game.player);
+        return b.toString();
+    }
+
+    private static String describe(Pokemon pkm) {
+        return pkm + " " + pkm.getPokemonName() + " " + pkm.getType() + " " + pkm.getPower() + " "
+                + pkm.getBallsRequired() + " ";
+    }
+
+    /**
+     * Get the offset of the Pokemons, after the string table starting at the
+     * offset
+     */
+    private static int skipStrings(byte[] bytes, int offset) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int count = buffer.getInt(offset);
+        offset += 4;
+        for (int i = 0; i < count; i++)
+            offset += 4 + buffer.getInt(offset);
+        return offset;
+    }
+
+    private static byte[] patchInt(byte[] bytes, int offset, int value) {
+        byte[] patched = bytes.clone();
+        ByteBuffer.wrap(patched).putInt(offset, value);
+        return patched;
+    }
+
+    private static void expectRejected(String name, byte[] bytes) {
+        String result;
+        try {
+            Snapshot.read(new Game(), Channels.newChannel(new ByteArrayInputStream(bytes)));
+            result = "accepted";
+        } catch (IOException e) {
+            result = "rejected";
+        } catch (RuntimeException e) {
+            result = e.toString();
+        }
+        check(name, "rejected", result);
+    }
+
+    private static void check(String name, Object expected, Object actual) {
+        checks++;
+        if (!expected.equals(actual)) {
+            failures++;
+            System.out.println("FAILED " + name + ": expected\n" + expected + "\nbut was\n" + actual);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package pokemon.ui;
+
+import pokemon.game.Cell;
+import pokemon.game.GameClock;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is responsible for comparing platform threads with virtual
+ * threads for the --engine=threads and --engine=virtual modes. Each thread
+ * parks on the game clock like the runnable of a pokemon or station. All of
+ * them watch the same cell and wake up on every signal, i.e. the worst case
+ * where every move of the player steps on the cells they watch. For each
+ * number of threads it measures the time to start them, the heap they take
+ * (the stacks of platform threads are outside the heap and not counted), and
+ * the time until all of them have woken up after a signal
+ * <p>
+ * Usage: java pokemon.ui.EntityThreadBenchmark [number of threads...]
+ */
+public class EntityThreadBenchmark {
+
+    private static final int ROUNDS = 50;
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] counts = {1000, 10000};
+        if (args.length > 0) {
+            counts = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+                counts[i] = Integer.parseInt(args[i]);
+        }
+        System.out.println("Java " + System.getProperty("java.version") + ", "
+                + Runtime.getRuntime().availableProcessors() + " cores");
+        if (!EntityThreads.isVirtualSupported())
+            System.out.println("Virtual threads are not supported, only platform threads are measured");
+        System.out.printf("%-9s %8s %12s %12s %14s%n", "threads", "count", "start (ms)", "heap (KB)", "wake-up (us)");
+        for (int count : counts) {
+            run("platform", EntityThreads.factory(false), count);
+            if (EntityThreads.isVirtualSupported())
+                run("virtual", EntityThreads.factory(true), count);
+        }
+    }
+
+    /**
+     * Start the threads, signal them ROUNDS times and stop them
+     *
+     * @param name    The name of the kind of threads
+     * @param threads The factory of the threads
+     * @param count   The number of threads
+     */
+    private static void run(String name, ThreadFactory threads, int count) throws InterruptedException {
+        GameClock clock = new GameClock();
+        Cell watched = new Cell(0, 0);
+        CountDownLatch parked = new CountDownLatch(count);
+        AtomicLong woken = new AtomicLong();
+        ArrayList<Thread> started = new ArrayList<>(count);
+
+        long memoryBefore = usedMemory();
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Thread t = threads.newThread(() -> {
+                long seen = clock.signals();
+                parked.countDown();
+                try {
+                    while (true) {
+                        long signals = clock.awaitSignal(seen, Long.MAX_VALUE, watched);
+                        if (signals != seen)
+                            woken.incrementAndGet();
+                        seen = signals;
+                    }
+                } catch (InterruptedException e) {
+                    //stopped by the benchmark
+                }
+            });
+            t.start();
+            started.add(t);
+        }
+        parked.await();
+        long startTime = System.nanoTime() - start;
+        long memory = usedMemory() - memoryBefore;
+
+        //every thread has to observe each signal before the next one is sent
+        long wakeUp = 0;
+        for (int round = 1; round <= ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            clock.signal(watched);
+            while (woken.get() < (long) round * count)
+                Thread.yield();
+            wakeUp += System.nanoTime() - t0;
+        }
+
+        for (Thread t : started)
+            t.interrupt();
+        for (Thread t : started)
+            t.join();
+        System.out.printf("%-9s %8d %12.1f %12d %14.1f%n", name, count, startTime / 1e6, memory >> 10,
+                wakeUp / 1e3 / ROUNDS);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}